@@ -0,0 +1,75 @@
+package edu.iastate.datasketches.clustering.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.iastate.datasketches.clustering.KMeansSketch;
+import edu.iastate.datasketches.clustering.Point;
+import edu.iastate.datasketches.clustering.PointBlock;
+import edu.iastate.datasketches.clustering.SyntheticData;
+
+/**
+ * Feeding n points of dimension d into a new sketch with bucket size m and
+ * merge threshold r, one point at a time (mergeReduce) or in one batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MergeReduceBenchmark {
+
+	private static final int K = 10;
+
+	@Param({"100000"})
+	public int n;
+
+	@Param({"2", "16"})
+	public int d;
+
+	@Param({"100", "1000"})
+	public int m;
+
+	@Param({"2", "4"})
+	public int r;
+
+	private PointBlock points;
+
+	private List<Point> pointList;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		points = SyntheticData.gaussianMixture(n, d, K, 100, 42);
+		pointList = points.toPoints();
+	}
+
+	@Benchmark
+	public KMeansSketch mergeReduce() {
+		KMeansSketch sketch = new KMeansSketch(K, m, r, 10, 1);
+		for (Point p : pointList) {
+			sketch.mergeReduce(p);
+		}
+		return sketch;
+	}
+
+	@Benchmark
+	public KMeansSketch clusterBatch() {
+		KMeansSketch sketch = new KMeansSketch(K, m, r, 10, 1);
+		sketch.clusterBatch(points);
+		return sketch;
+	}
+}
@@ -0,0 +1,81 @@
+package edu.iastate.datasketches.clustering.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.iastate.datasketches.clustering.KMeansPlusPlus;
+import edu.iastate.datasketches.clustering.Point;
+import edu.iastate.datasketches.clustering.PointBlock;
+import edu.iastate.datasketches.clustering.SyntheticData;
+
+/**
+ * Choosing k centers out of n points of dimension d, drawn from a mixture
+ * of k Gaussians. Every invocation uses the same random seed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SeedingBenchmark {
+
+	@Param({"10000", "100000"})
+	public int n;
+
+	@Param({"2", "16"})
+	public int d;
+
+	@Param({"10", "100"})
+	public int k;
+
+	private PointBlock points;
+
+	private List<Point> pointList;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		points = SyntheticData.gaussianMixture(n, d, k, 100, 42);
+		pointList = points.toPoints();
+	}
+
+	@Benchmark
+	public PointBlock fastSeeding() {
+		return KMeansPlusPlus.fastSeeding(points, k, new Random(7), KMeansPlusPlus.DEFAULT_PARALLEL_THRESHOLD);
+	}
+
+	@Benchmark
+	public PointBlock seeding() {
+		return KMeansPlusPlus.seeding(points, k, new Random(7));
+	}
+
+	@Benchmark
+	public PointBlock parallelSeeding() {
+		return KMeansPlusPlus.parallelSeeding(points, k, new Random(7));
+	}
+
+	@Benchmark
+	public PointBlock kMeansParallelSeeding() {
+		return KMeansPlusPlus.kMeansParallelSeeding(points, k, new Random(7),
+				KMeansPlusPlus.DEFAULT_KMEANS_PARALLEL_ROUNDS, KMeansPlusPlus.DEFAULT_OVERSAMPLING_FACTOR);
+	}
+
+	@Benchmark
+	public List<Point> randomCenters() {
+		return KMeansPlusPlus.randomCenters(pointList, k);
+	}
+}
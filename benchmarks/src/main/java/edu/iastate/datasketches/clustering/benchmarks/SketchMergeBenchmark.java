@@ -0,0 +1,77 @@
+package edu.iastate.datasketches.clustering.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.iastate.datasketches.clustering.KMeansSketch;
+import edu.iastate.datasketches.clustering.SyntheticData;
+
+/**
+ * Combining numSketches sketches of n points each, by a chain of pairwise
+ * merges or by one mergeAll.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SketchMergeBenchmark {
+
+	private static final int K = 10;
+
+	@Param({"2", "16", "128"})
+	public int numSketches;
+
+	@Param({"20000"})
+	public int n;
+
+	@Param({"8"})
+	public int d;
+
+	@Param({"100", "1000"})
+	public int m;
+
+	@Param({"2", "4"})
+	public int r;
+
+	private List<KMeansSketch> sketches;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		sketches = new ArrayList<>(numSketches);
+		for (int i=0; i<numSketches; i++) {
+			KMeansSketch sketch = new KMeansSketch(K, m, r, 10, 1);
+			sketch.clusterBatch(SyntheticData.gaussianMixture(n, d, K, 100, i));
+			sketches.add(sketch);
+		}
+	}
+
+	@Benchmark
+	public KMeansSketch merge() {
+		KMeansSketch merged = sketches.get(0);
+		for (int i=1; i<sketches.size(); i++) {
+			merged = merged.merge(sketches.get(i));
+		}
+		return merged;
+	}
+
+	@Benchmark
+	public KMeansSketch mergeAll() {
+		return KMeansSketch.mergeAll(sketches);
+	}
+}
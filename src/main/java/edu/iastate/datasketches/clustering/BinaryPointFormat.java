@@ -0,0 +1,55 @@
+package edu.iastate.datasketches.clustering;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of a binary point file, values are little-endian whatever the
+ * platform that wrote the file.
+ *
+ * <pre>
+ * Bytes 0-3: magic                 Byte 4: version
+ * Byte 5: flags (FLOAT32, WEIGHTED) Bytes 6-7: unused
+ * Bytes 8-11: dimension            Bytes 12-15: unused
+ * Bytes 16-23: number of points
+ * Bytes 24-  : coordinates, row-major, count*dimension values
+ *              then, if WEIGHTED, count weights
+ * </pre>
+ *
+ * Values are float64, or float32 if the FLOAT32 flag is set. Without the
+ * WEIGHTED flag every point has weight 1.
+ */
+final class BinaryPointFormat {
+
+	static final int MAGIC = 0x42504d4b;
+
+	static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	static final byte VERSION = 1;
+
+	static final int FLOAT32 = 1;
+
+	static final int WEIGHTED = 2;
+
+	static final int MAGIC_INT = 0;
+
+	static final int VERSION_BYTE = 4;
+
+	static final int FLAGS_BYTE = 5;
+
+	static final int DIMENSION_INT = 8;
+
+	static final int COUNT_LONG = 16;
+
+	static final int HEADER_BYTES = 24;
+
+	private BinaryPointFormat() {
+	}
+
+	/**
+	 * @param flags
+	 * @return bytes of one value
+	 */
+	static int valueBytes(int flags) {
+		return (flags & FLOAT32) != 0 ? 4 : 8;
+	}
+}
@@ -0,0 +1,237 @@
+package edu.iastate.datasketches.clustering;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import com.yahoo.memory.MapHandle;
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * Reads points in the format of {@link BinaryPointFormat} from a Memory,
+ * usually a memory-mapped file (see {@link #open(File)}). Batches are bulk
+ * copied into a PointBlock, and {@link #coordinates(long, int)} and
+ * {@link #weights(long, int)} hand out zero-copy regions of the file.
+ * Memory reads in native byte order, so on a big-endian platform the
+ * little-endian values of the file are swapped as they are read.
+ */
+public class BinaryPointSource implements PointSource {
+
+	// the file is little-endian, Memory reads native order
+	private static final boolean SWAP = ByteOrder.nativeOrder() != BinaryPointFormat.BYTE_ORDER;
+
+	private final Memory mem;
+
+	// null unless the memory was mapped by open(File)
+	private final MapHandle handle;
+
+	private final int dimension;
+
+	private final long count;
+
+	private final boolean float32;
+
+	private final boolean weighted;
+
+	// offset of the first weight
+	private final long weightsOffset;
+
+	// next point to read
+	private long next;
+
+	// float32 values of a batch
+	private float[] scratch = new float[0];
+
+	/**
+	 * read the points of a memory, which must not change while it is read
+	 * @param mem
+	 */
+	public BinaryPointSource(Memory mem) {
+		this(mem, null);
+	}
+
+	private BinaryPointSource(Memory mem, MapHandle handle) {
+		if (mem.getCapacity() < BinaryPointFormat.HEADER_BYTES 
+				|| getInt(mem, BinaryPointFormat.MAGIC_INT) != BinaryPointFormat.MAGIC) {
+			throw new SketchesArgumentException("Not a binary point file");
+		}
+		if (mem.getByte(BinaryPointFormat.VERSION_BYTE) != BinaryPointFormat.VERSION) {
+			throw new SketchesArgumentException("Unsupported version: " + mem.getByte(BinaryPointFormat.VERSION_BYTE));
+		}
+		int flags = mem.getByte(BinaryPointFormat.FLAGS_BYTE);
+		this.mem = mem;
+		this.handle = handle;
+		this.dimension = getInt(mem, BinaryPointFormat.DIMENSION_INT);
+		this.count = SWAP ? Long.reverseBytes(mem.getLong(BinaryPointFormat.COUNT_LONG))
+				: mem.getLong(BinaryPointFormat.COUNT_LONG);
+		this.float32 = (flags & BinaryPointFormat.FLOAT32) != 0;
+		this.weighted = (flags & BinaryPointFormat.WEIGHTED) != 0;
+		long valueBytes = BinaryPointFormat.valueBytes(flags);
+		this.weightsOffset = BinaryPointFormat.HEADER_BYTES + count * dimension * valueBytes;
+		long bytes = weightsOffset + (weighted ? count * valueBytes : 0);
+		if (dimension < 0 || count < 0 || mem.getCapacity() < bytes) {
+			throw new SketchesArgumentException("Corrupt binary point file, " + mem.getCapacity() + " < " + bytes);
+		}
+	}
+
+	/**
+	 * memory-map a binary point file, close() unmaps it
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static BinaryPointSource open(File file) throws IOException {
+		MapHandle handle;
+		try {
+			handle = Memory.map(file);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("cannot map " + file, e);
+		}
+		try {
+			return new BinaryPointSource(handle.get(), handle);
+		} catch (RuntimeException e) {
+			handle.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	/**
+	 * get number of points
+	 * @return
+	 */
+	public long size() {
+		return count;
+	}
+
+	/**
+	 * @return true if values are stored as float32
+	 */
+	public boolean isFloat32() {
+		return float32;
+	}
+
+	/**
+	 * @return true if the file stores weights, otherwise every weight is 1
+	 */
+	public boolean isWeighted() {
+		return weighted;
+	}
+
+	/**
+	 * zero-copy view of the coordinates of points [from, from+n),
+	 * row-major little-endian float64 (or float32) values
+	 * @param from
+	 * @param n
+	 * @return
+	 */
+	public Memory coordinates(long from, int n) {
+		long rowBytes = (long) dimension * valueBytes();
+		return mem.region(BinaryPointFormat.HEADER_BYTES + from * rowBytes, n * rowBytes);
+	}
+
+	/**
+	 * zero-copy view of the weights of points [from, from+n), little-endian
+	 * @param from
+	 * @param n
+	 * @return null if the file has no weights
+	 */
+	public Memory weights(long from, int n) {
+		if (!weighted) {
+			return null;
+		}
+		return mem.region(weightsOffset + from * valueBytes(), (long) n * valueBytes());
+	}
+
+	@Override
+	public int nextBatch(PointBlock batch, int maxPoints) throws IOException {
+		int n = (int) Math.min(maxPoints, count - next);
+		batch.resize(dimension, Math.max(n, 0));
+		if (n <= 0) {
+			return 0;
+		}
+		int length = n * dimension;
+		long coordOffset = BinaryPointFormat.HEADER_BYTES + next * dimension * valueBytes();
+		if (float32) {
+			if (scratch.length < Math.max(length, n)) {
+				scratch = new float[Math.max(length, n)];
+			}
+			mem.getFloatArray(coordOffset, scratch, 0, length);
+			double[] coords = batch.coords();
+			for (int i=0; i<length; i++) {
+				coords[i] = toNative(scratch[i]);
+			}
+		}
+		else {
+			mem.getDoubleArray(coordOffset, batch.coords(), 0, length);
+			toNative(batch.coords(), length);
+		}
+		
+		double[] weights = batch.weights();
+		if (!weighted) {
+			Arrays.fill(weights, 0, n, 1.0);
+		}
+		else if (float32) {
+			mem.getFloatArray(weightsOffset + next * 4, scratch, 0, n);
+			for (int i=0; i<n; i++) {
+				weights[i] = toNative(scratch[i]);
+			}
+		}
+		else {
+			mem.getDoubleArray(weightsOffset + next * 8, weights, 0, n);
+			toNative(weights, n);
+		}
+		next += n;
+		return n;
+	}
+
+	/**
+	 * read from the first point again
+	 */
+	public void rewind() {
+		next = 0;
+	}
+
+	@Override
+	public void close() {
+		if (handle != null) {
+			handle.close();
+		}
+	}
+
+	private int valueBytes() {
+		return float32 ? 4 : 8;
+	}
+
+	private static int getInt(Memory mem, long offset) {
+		int value = mem.getInt(offset);
+		return SWAP ? Integer.reverseBytes(value) : value;
+	}
+
+	private static float toNative(float value) {
+		if (!SWAP) {
+			return value;
+		}
+		return Float.intBitsToFloat(Integer.reverseBytes(Float.floatToRawIntBits(value)));
+	}
+
+	/**
+	 * swap the first length values read from the file, if needed
+	 */
+	private static void toNative(double[] values, int length) {
+		if (!SWAP) {
+			return;
+		}
+		for (int i=0; i<length; i++) {
+			values[i] = Double.longBitsToDouble(Long.reverseBytes(Double.doubleToRawLongBits(values[i])));
+		}
+	}
+}
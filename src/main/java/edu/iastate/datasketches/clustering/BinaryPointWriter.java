@@ -0,0 +1,164 @@
+package edu.iastate.datasketches.clustering;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+/**
+ * Writes points to a file in the format of {@link BinaryPointFormat}.
+ * Points are streamed: coordinates go to the file, weights to a temporary
+ * file that is appended on close, when the number of points is known.
+ */
+public class BinaryPointWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final int dimension;
+
+	private final int flags;
+
+	// bytes of the coordinates of one point
+	private final int rowBytes;
+
+	private final FileChannel channel;
+
+	private final ByteBuffer coordBuffer;
+
+	// weights until close, null for unweighted points
+	private final File weightFile;
+
+	private final FileChannel weightChannel;
+
+	private final ByteBuffer weightBuffer;
+
+	private long count;
+
+	/**
+	 * @param file
+	 * @param dimension
+	 * @param float32 store float32 instead of float64 values
+	 * @param weighted store a weight for every point
+	 * @throws IOException
+	 */
+	public BinaryPointWriter(File file, int dimension, boolean float32, boolean weighted) throws IOException {
+		this.dimension = dimension;
+		this.flags = (float32 ? BinaryPointFormat.FLOAT32 : 0) | (weighted ? BinaryPointFormat.WEIGHTED : 0);
+		this.rowBytes = PreambleUtil.checkArrayLength((long) dimension * BinaryPointFormat.valueBytes(flags), "Point");
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		// holds at least one point
+		this.coordBuffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, rowBytes)).order(BinaryPointFormat.BYTE_ORDER);
+		channel.position(BinaryPointFormat.HEADER_BYTES);
+		if (weighted) {
+			this.weightFile = File.createTempFile(file.getName(), ".weights", file.getAbsoluteFile().getParentFile());
+			this.weightChannel = FileChannel.open(weightFile.toPath(), StandardOpenOption.WRITE,
+					StandardOpenOption.READ);
+			this.weightBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(BinaryPointFormat.BYTE_ORDER);
+		}
+		else {
+			this.weightFile = null;
+			this.weightChannel = null;
+			this.weightBuffer = null;
+		}
+	}
+
+	/**
+	 * write a point whose coordinates are src[offset, offset+dimension)
+	 * @param src
+	 * @param offset
+	 * @param weight ignored for unweighted files
+	 * @throws IOException
+	 */
+	public void write(double[] src, int offset, double weight) throws IOException {
+		int valueBytes = BinaryPointFormat.valueBytes(flags);
+		if (coordBuffer.remaining() < rowBytes) {
+			drain(channel, coordBuffer);
+		}
+		if (valueBytes == 4) {
+			for (int j=0; j<dimension; j++) {
+				coordBuffer.putFloat((float) src[offset + j]);
+			}
+		}
+		else {
+			for (int j=0; j<dimension; j++) {
+				coordBuffer.putDouble(src[offset + j]);
+			}
+		}
+		if (weightBuffer != null) {
+			if (weightBuffer.remaining() < valueBytes) {
+				drain(weightChannel, weightBuffer);
+			}
+			if (valueBytes == 4) {
+				weightBuffer.putFloat((float) weight);
+			}
+			else {
+				weightBuffer.putDouble(weight);
+			}
+		}
+		count++;
+	}
+
+	/**
+	 * write all points of a block
+	 * @param batch
+	 * @throws IOException
+	 */
+	public void write(PointBlock batch) throws IOException {
+		if (batch.size() > 0 && batch.dimension() != dimension) {
+			throw new DimensionMismatchException(batch.dimension(), dimension);
+		}
+		double[] coords = batch.coords();
+		for (int i=0; i<batch.size(); i++) {
+			write(coords, i * dimension, batch.weight(i));
+		}
+	}
+
+	/**
+	 * append the weights and write the header
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			drain(channel, coordBuffer);
+			if (weightChannel != null) {
+				drain(weightChannel, weightBuffer);
+				long size = weightChannel.size();
+				long end = channel.position();
+				long position = 0;
+				weightChannel.position(0);
+				while (position < size) {
+					position += channel.transferFrom(weightChannel, end + position, size - position);
+				}
+			}
+			ByteBuffer header = ByteBuffer.allocate(BinaryPointFormat.HEADER_BYTES).order(BinaryPointFormat.BYTE_ORDER);
+			header.putInt(BinaryPointFormat.MAGIC_INT, BinaryPointFormat.MAGIC);
+			header.put(BinaryPointFormat.VERSION_BYTE, BinaryPointFormat.VERSION);
+			header.put(BinaryPointFormat.FLAGS_BYTE, (byte) flags);
+			header.putInt(BinaryPointFormat.DIMENSION_INT, dimension);
+			header.putLong(BinaryPointFormat.COUNT_LONG, count);
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+		} finally {
+			channel.close();
+			if (weightChannel != null) {
+				weightChannel.close();
+				Files.deleteIfExists(weightFile.toPath());
+			}
+		}
+	}
+
+	private static void drain(FileChannel target, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			target.write(buffer);
+		}
+		buffer.clear();
+	}
+}
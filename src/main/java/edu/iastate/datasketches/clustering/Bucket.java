@@ -1,114 +1,144 @@
-package edu.iastate.datasketches.clustering;
-
-import java.util.ArrayList;
-import java.util.List;
-
-import org.apache.commons.math3.util.Pair;
-
-
-public class Bucket {
-	
-	public int m;
-	
-	// Bucket B_0 can store any number between 0 and m points,
-	// for i>=1, bucket B_i is either empty or contains exactly m points.
-	// Coreset is a list of weighted data points.
-	public List<Point> coreset;
-	
-	public Bucket(int m) {
-		this.m = m;
-		this.coreset = new ArrayList<>();
-	}
-	
-	public Bucket(int m, List<Point> coreset) {
-		this.m = m;
-		// shallow copy
-		this.coreset = coreset;
-	}
-	
-	/**
-	 * clone bucket b to return a new bucket
-	 * @param b
-	 */
-	public Bucket(Bucket b) {
-		this.m = b.m;
-		this.coreset = new ArrayList<>();
-		// deep copy
-		for (Point p : coreset) {
-			this.coreset.add(new Point(p));
-		}
-	}
-	
-	/**
-	 * add a new point to the coreset
-	 * @param p new point
-	 */
-	public void addPoint(Point p) {
-		coreset.add(p);
-	}
-	
-	/**
-	 * get coreset size
-	 * @return
-	 */
-	public int coresetSize() {
-		return coreset.size();
-	}
-	
-	/**
-	 * Merge the coreset in this bucket (size m) with other buckets (coresets)
-	 * @return a new bucket with merged coreset (size m)
-	 */
-	public Bucket mergeBuckets(List<Bucket> bucketList) {
-		// the coreset in this bucket
-		List<Point> unionSet = coreset;
-		// union all the coresets in the bucketList
-		for (Bucket b : bucketList) {
-			unionSet.addAll(b.coreset);
-		}
-		List<Point> mergedCoreset = KMeansPlusPlus.fastSeeding(unionSet, m);
-		Bucket mergedBucket = new Bucket(m, mergedCoreset);
-		return mergedBucket;
-	}
-	
-	
-	/**
-	 * Merge the coreset in this bucket_0 (size 0 to m-1) with another bucket_0
-	 * 
-	 * @param anotherBucket
-	 * @return a pair of two buckets: a new bucket_0 (size 0 to m-1) and the
-	 *         "carry" bucket (size m)
-	 */
-	public Pair<Bucket, Bucket> mergeBucket0(Bucket anotherBucket) {
-		// union the coresets in two buckets (deep copy)
-		List<Point> unionSet = new ArrayList<>();
-		for (Point p : coreset) {
-			unionSet.add(new Point(p));
-		}
-		for (Point p : anotherBucket.coreset) {
-			unionSet.add(new Point(p));
-		}
-		
-		// generate two buckets: bucketRemain and bucketCarry, 
-		// bucketCarry maybe null if sum of two coresets size is less than m
-		Bucket bucketRemain = new Bucket(m);
-		Bucket bucketCarry = null;
-		if (unionSet.size() < m) {
-			bucketRemain.coreset = unionSet;
-		}
-		else {
-			bucketCarry = new Bucket(m);
-			for (int i=0; i<unionSet.size(); i++) {
-				if (i < m) {
-					// add to bucketCarry
-					bucketCarry.addPoint(unionSet.get(i));
-				}
-				else {
-					bucketRemain.addPoint(unionSet.get(i));
-				}
-			}
-		}
-		
-		return new Pair<Bucket, Bucket>(bucketRemain, bucketCarry);
-	}
-}
+package edu.iastate.datasketches.clustering;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.util.Pair;
+
+
+public class Bucket {
+	
+	public int m;
+	
+	// Bucket B_0 can store any number between 0 and m points,
+	// for i>=1, bucket B_i is either empty or contains exactly m points.
+	// Coreset is a block of weighted data points.
+	public PointBlock coreset;
+	
+	// number of points of the coreset visible to concurrent readers,
+	// see publish()
+	private volatile int published;
+	
+	public Bucket(int m) {
+		this.m = m;
+		this.coreset = new PointBlock(m);
+	}
+	
+	public Bucket(int m, PointBlock coreset) {
+		this.m = m;
+		// shallow copy
+		this.coreset = coreset;
+	}
+	
+	/**
+	 * clone bucket b to return a new bucket
+	 * @param b
+	 */
+	public Bucket(Bucket b) {
+		this.m = b.m;
+		// deep copy
+		this.coreset = new PointBlock(b.coreset);
+	}
+	
+	/**
+	 * add a new point to the coreset
+	 * @param p new point
+	 */
+	public void addPoint(Point p) {
+		coreset.add(p);
+	}
+	
+	/**
+	 * make the points added so far visible to threads that read the
+	 * coreset through {@link #snapshot()}. Only meaningful for a bucket that
+	 * is filled by one thread, with capacity for all its points, while
+	 * others read it (bucket 0 of a sketch).
+	 */
+	public void publish() {
+		published = coreset.size();
+	}
+	
+	/**
+	 * copy the points published so far into a new bucket,
+	 * safe while another thread keeps adding points to this bucket
+	 * @return
+	 */
+	public Bucket snapshot() {
+		int size = published;
+		Bucket copy = new Bucket(m);
+		copy.coreset.addRange(coreset, 0, size);
+		copy.published = size;
+		return copy;
+	}
+	
+	/**
+	 * get coreset size
+	 * @return
+	 */
+	public int coresetSize() {
+		return coreset.size();
+	}
+	
+	/**
+	 * Merge the coreset in this bucket (size m) with other buckets (coresets)
+	 * @return a new bucket with merged coreset (size m)
+	 */
+	public Bucket mergeBuckets(List<Bucket> bucketList) {
+		return mergeBuckets(bucketList, SeedingStrategy.FAST_SEEDING);
+	}
+	
+	/**
+	 * Merge the coreset in this bucket (size m) with other buckets (coresets)
+	 * @param bucketList
+	 * @param seeding how to reduce the union of the coresets to m points
+	 * @return a new bucket with merged coreset (size m)
+	 */
+	public Bucket mergeBuckets(List<Bucket> bucketList, SeedingStrategy seeding) {
+		int unionSize = coreset.size();
+		for (Bucket b : bucketList) {
+			unionSize += b.coresetSize();
+		}
+		// the coreset in this bucket
+		PointBlock unionSet = new PointBlock(coreset.dimension(), unionSize);
+		unionSet.addAll(coreset);
+		// union all the coresets in the bucketList
+		for (Bucket b : bucketList) {
+			unionSet.addAll(b.coreset);
+		}
+		PointBlock mergedCoreset = seeding.seed(unionSet, m, new Random());
+		Bucket mergedBucket = new Bucket(m, mergedCoreset);
+		return mergedBucket;
+	}
+	
+	
+	/**
+	 * Merge the coreset in this bucket_0 (size 0 to m-1) with another bucket_0
+	 * 
+	 * @param anotherBucket
+	 * @return a pair of two buckets: a new bucket_0 (size 0 to m-1) and the
+	 *         "carry" bucket (size m)
+	 */
+	public Pair<Bucket, Bucket> mergeBucket0(Bucket anotherBucket) {
+		// union the coresets in two buckets (deep copy)
+		PointBlock unionSet = new PointBlock(coreset.dimension(), coreset.size() + anotherBucket.coresetSize());
+		unionSet.addAll(coreset);
+		unionSet.addAll(anotherBucket.coreset);
+		
+		// generate two buckets: bucketRemain and bucketCarry, 
+		// bucketCarry maybe null if sum of two coresets size is less than m
+		Bucket bucketRemain = new Bucket(m);
+		Bucket bucketCarry = null;
+		if (unionSet.size() < m) {
+			// keep the capacity of m, bucket 0 must not grow while published
+			bucketRemain.coreset.addAll(unionSet);
+		}
+		else {
+			bucketCarry = new Bucket(m);
+			// the first m points go to bucketCarry, the rest to bucketRemain
+			bucketCarry.coreset.addRange(unionSet, 0, m);
+			bucketRemain.coreset.addRange(unionSet, m, unionSet.size());
+		}
+		
+		return new Pair<Bucket, Bucket>(bucketRemain, bucketCarry);
+	}
+}
@@ -0,0 +1,209 @@
+package edu.iastate.datasketches.clustering;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.iastate.liberty.FullyOnline;
+import edu.iastate.liberty.PracticalOnline;
+import edu.iastate.liberty.SemiOnline;
+
+/**
+ * Streams the same data set through KMeansSketch, FullyOnline, SemiOnline
+ * and PracticalOnline and prints one row per clusterer: throughput,
+ * peak heap retained by the clusterer, number of centers, and k-means cost
+ * relative to a reference solution (the best of several
+ * k-means++ runs with Lloyd's iterations on the whole data set).
+ * Throughput, centers and cost come from a first pass without any GC, the
+ * peak heap from a second pass of a new clusterer that forces full GCs to
+ * sample the retained heap HEAP_SAMPLES times.
+ * <pre>
+ * usage: ClustererComparison gaussian|heavy|highdim|file.csv|file.bin k [n] [d] [seed]
+ * </pre>
+ * gaussian and heavy are mixtures of k clusters in d dimensions (default
+ * 100000 points, d=10), highdim is a Gaussian mixture with d=256 by default.
+ */
+public class ClustererComparison {
+
+	private static final int REFERENCE_ITERATIONS = 20;
+
+	private static final int REFERENCE_TRIALS = 5;
+
+	private static final double SPREAD = 100;
+
+	// retained heap measurements per stream, each one forces a full GC
+	private static final int HEAP_SAMPLES = 16;
+
+	/**
+	 * a streaming clusterer under test
+	 */
+	private interface Clusterer {
+		void cluster(Point p);
+
+		List<Point> getCenters();
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("usage: ClustererComparison gaussian|heavy|highdim|file.csv|file.bin k [n] [d] [seed]");
+			return;
+		}
+		final int k = Integer.parseInt(args[1]);
+		int n = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+		int d = args.length > 3 ? Integer.parseInt(args[3]) : ("highdim".equals(args[0]) ? 256 : 10);
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+		
+		PointBlock data = load(args[0], n, d, k, seed);
+		System.out.println("data set " + args[0] + ": " + data.size() + " points, dimension " + data.dimension());
+		
+		PointBlock reference = KMeansPlusPlus.multiKMeansPlusPlus(data, k, REFERENCE_ITERATIONS, REFERENCE_TRIALS);
+		double referenceCost = cost(data, reference);
+		System.out.println("reference cost: " + referenceCost);
+		
+		List<Point> points = data.toPoints();
+		System.out.printf("%-16s %14s %14s %10s %12s %12s%n", 
+				"clusterer", "points/sec", "peak MB", "centers", "query ms", "cost ratio");
+		for (String name : new String[] {"KMeansSketch", "FullyOnline", "SemiOnline", "PracticalOnline"}) {
+			Clusterer clusterer = create(name, k, points.size(), referenceCost);
+			long start = System.nanoTime();
+			for (Point p : points) {
+				clusterer.cluster(p);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			
+			start = System.nanoTime();
+			List<Point> centers = clusterer.getCenters();
+			double queryMillis = (System.nanoTime() - start) / 1e6;
+			double ratio = cost(data, PointBlock.fromPoints(centers)) / referenceCost;
+			int centerCount = centers.size();
+			
+			// the first clusterer must not count in the baseline of the second pass
+			clusterer = null;
+			centers = null;
+			double peakMB = peakHeap(name, k, points, referenceCost) / (1024.0 * 1024.0);
+			System.out.printf("%-16s %14.0f %14.2f %10d %12.1f %12.4f%n", 
+					name, points.size() / seconds, peakMB, centerCount, queryMillis, ratio);
+		}
+	}
+
+	/**
+	 * stream the points through a new clusterer, forcing full GCs to sample
+	 * the heap it retains
+	 * @return peak retained bytes
+	 */
+	private static long peakHeap(String name, int k, List<Point> points, double referenceCost) {
+		long baseline = usedHeap();
+		Clusterer clusterer = create(name, k, points.size(), referenceCost);
+		int sampleEvery = Math.max(1, points.size() / HEAP_SAMPLES);
+		long peak = 0;
+		for (int i=0; i<points.size(); i++) {
+			clusterer.cluster(points.get(i));
+			if ((i + 1) % sampleEvery == 0) {
+				peak = Math.max(peak, usedHeap() - baseline);
+			}
+		}
+		peak = Math.max(peak, usedHeap() - baseline);
+		// keep the clusterer reachable until the last sample
+		clusterer.getCenters();
+		return peak;
+	}
+
+	private static Clusterer create(String name, final int k, long n, double referenceCost) {
+		switch (name) {
+		case "KMeansSketch": {
+			final KMeansSketch sketch = new KMeansSketch(k, 50 * k, 2, 15, 5);
+			return new Clusterer() {
+				@Override
+				public void cluster(Point p) {
+					sketch.cluster(p);
+				}
+
+				@Override
+				public List<Point> getCenters() {
+					return sketch.getCenters();
+				}
+			};
+		}
+		case "FullyOnline": {
+			final FullyOnline fo = new FullyOnline(k);
+			return new Clusterer() {
+				@Override
+				public void cluster(Point p) {
+					fo.cluster(p);
+				}
+
+				@Override
+				public List<Point> getCenters() {
+					return fo.getCenters();
+				}
+			};
+		}
+		case "SemiOnline": {
+			// knows the number of points and the reference cost in advance
+			final SemiOnline so = new SemiOnline(n, referenceCost, k);
+			return new Clusterer() {
+				@Override
+				public void cluster(Point p) {
+					so.cluster(p);
+				}
+
+				@Override
+				public List<Point> getCenters() {
+					return so.getCenters();
+				}
+			};
+		}
+		default: {
+			final PracticalOnline po = new PracticalOnline(k);
+			return new Clusterer() {
+				@Override
+				public void cluster(Point p) {
+					po.cluster(p);
+				}
+
+				@Override
+				public List<Point> getCenters() {
+					return po.getCenters();
+				}
+			};
+		}
+		}
+	}
+
+	/**
+	 * generate a synthetic data set or read a file
+	 */
+	private static PointBlock load(String dataSet, int n, int d, int k, long seed) throws IOException {
+		switch (dataSet) {
+		case "gaussian":
+		case "highdim":
+			return SyntheticData.gaussianMixture(n, d, k, SPREAD, seed);
+		case "heavy":
+			return SyntheticData.heavyTailedMixture(n, d, k, SPREAD, seed);
+		default:
+			File file = new File(dataSet);
+			try (PointSource source = dataSet.endsWith(".bin") 
+					? BinaryPointSource.open(file) : new CsvPointSource(file)) {
+				PointBlock data = new PointBlock(source.dimension(), 4096);
+				PointBlock batch = new PointBlock(source.dimension(), 4096);
+				while (source.nextBatch(batch, 4096) > 0) {
+					data.addAll(batch);
+				}
+				return data;
+			}
+		}
+	}
+
+	private static double cost(PointBlock data, PointBlock centers) {
+		return new CostEvaluator(centers).cost(data);
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i=0; i<3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
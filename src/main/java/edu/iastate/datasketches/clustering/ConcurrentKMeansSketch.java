@@ -0,0 +1,108 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.math3.exception.NumberIsTooSmallException;
+
+/**
+ * A KMeansSketch that can be fed from many threads.
+ * Points go to one of several independent sub-sketches (stripes); each
+ * thread is bound to one stripe on first use, round-robin. Ingestion is not
+ * lock-free: a stripe is updated under its own ReentrantLock, because a
+ * KMeansSketch has a single writer. With no more threads than stripes every
+ * lock is only ever taken by its own thread, so it is uncontended and costs
+ * a compare-and-set; with more threads, threads sharing a stripe wait for
+ * each other. At query time snapshots of the stripes are combined with
+ * {@link KMeansSketch#mergeAll(java.util.Collection)}, without taking the locks.
+ */
+public class ConcurrentKMeansSketch {
+
+	// independent sub-sketches and their locks
+	private final KMeansSketch[] stripes;
+
+	private final ReentrantLock[] locks;
+
+	// stripe of the current thread
+	private final ThreadLocal<Integer> stripeOfThread;
+
+	private final AtomicInteger nextStripe = new AtomicInteger();
+
+	/**
+	 * @param numStripes number of sub-sketches, typically the number of ingesting threads
+	 * @param k
+	 * @param bucketSize
+	 * @param mergeThreshold
+	 * @param iters
+	 * @param trials
+	 * @param seeding
+	 */
+	public ConcurrentKMeansSketch(int numStripes, int k, int bucketSize, int mergeThreshold, int iters,
+			int trials, SeedingStrategy seeding) {
+		if (numStripes < 1) {
+			throw new NumberIsTooSmallException(numStripes, 1, true);
+		}
+		this.stripes = new KMeansSketch[numStripes];
+		this.locks = new ReentrantLock[numStripes];
+		for (int i=0; i<numStripes; i++) {
+			stripes[i] = new KMeansSketch(k, bucketSize, mergeThreshold, iters, trials, seeding);
+			locks[i] = new ReentrantLock();
+		}
+		this.stripeOfThread = new ThreadLocal<Integer>() {
+			@Override
+			protected Integer initialValue() {
+				return (nextStripe.getAndIncrement() & Integer.MAX_VALUE) % stripes.length;
+			}
+		};
+	}
+
+	/**
+	 * update the stripe of the current thread with a new point
+	 * @param p
+	 */
+	public void cluster(Point p) {
+		int stripe = stripeOfThread.get();
+		locks[stripe].lock();
+		try {
+			stripes[stripe].cluster(p);
+		} finally {
+			locks[stripe].unlock();
+		}
+	}
+
+	/**
+	 * update the stripe of the current thread with a batch of points
+	 * @see KMeansSketch#clusterBatch(double[], int, double[])
+	 * @param rows
+	 * @param dimension
+	 * @param weights
+	 */
+	public void clusterBatch(double[] rows, int dimension, double[] weights) {
+		int stripe = stripeOfThread.get();
+		locks[stripe].lock();
+		try {
+			stripes[stripe].clusterBatch(rows, dimension, weights);
+		} finally {
+			locks[stripe].unlock();
+		}
+	}
+
+	/**
+	 * merge snapshots of all stripes into a new sketch,
+	 * the ingesting threads are not blocked
+	 * @return
+	 */
+	public KMeansSketch getMergedSketch() {
+		return KMeansSketch.mergeAll(Arrays.asList(stripes));
+	}
+
+	/**
+	 * Compute k centers from all stripes
+	 * @return list of k points as cluster centers
+	 */
+	public List<Point> getCenters() {
+		return getMergedSketch().getCenters();
+	}
+}
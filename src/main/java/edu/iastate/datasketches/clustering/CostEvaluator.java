@@ -0,0 +1,164 @@
+package edu.iastate.datasketches.clustering;
+
+import java.io.IOException;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NoDataException;
+import org.apache.commons.math3.exception.NumberIsTooSmallException;
+
+/**
+ * Scores a fixed set of centers: the weighted k-means cost of a data set
+ * (sum of weight times squared distance to the nearest center) and the
+ * nearest center of every point. Points are split into fixed chunks that
+ * run on the common fork-join pool, so the result does not depend on the
+ * number of threads. Within a chunk, a tile of points is compared with a
+ * tile of centers at a time, so that the centers stay in cache.
+ */
+public class CostEvaluator {
+
+	// points per parallel chunk
+	private static final int CHUNK_SIZE = 8192;
+
+	// points per tile
+	private static final int POINT_TILE = 64;
+
+	// coordinates of the centers of one tile, 16 KB
+	private static final int CENTER_TILE_VALUES = 2048;
+
+	private final PointBlock centers;
+
+	/**
+	 * @param centers not modified, must not change while in use
+	 */
+	public CostEvaluator(PointBlock centers) {
+		this.centers = centers;
+	}
+
+	/**
+	 * weighted cost of points to their nearest centers
+	 * @param points
+	 * @return
+	 */
+	public double cost(PointBlock points) {
+		return assign(points, null);
+	}
+
+	/**
+	 * assign every point to its nearest center
+	 * @param points
+	 * @param labels labels[i] is set to the index of the nearest center of point i, may be null,
+	 *        must hold at least points.size() labels
+	 * @return weighted cost (sum of weight times squared distance to nearest center)
+	 */
+	public double assign(final PointBlock points, final int[] labels) {
+		if (labels != null && labels.length < points.size()) {
+			throw new NumberIsTooSmallException(labels.length, points.size(), true);
+		}
+		if (points.size() == 0) {
+			return 0;
+		}
+		if (centers.size() == 0) {
+			throw new NoDataException();
+		}
+		if (points.dimension() != centers.dimension()) {
+			throw new DimensionMismatchException(points.dimension(), centers.dimension());
+		}
+		final int n = points.size();
+		final int numChunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		final double[] partialCosts = new double[numChunks];
+		ParallelChunks.run(numChunks, new ParallelChunks.Body() {
+			@Override
+			public void run(int chunk) {
+				int from = chunk * CHUNK_SIZE;
+				partialCosts[chunk] = assignRange(points, from, Math.min(from + CHUNK_SIZE, n), labels);
+			}
+		});
+		double cost = 0;
+		for (double partialCost : partialCosts) {
+			cost += partialCost;
+		}
+		return cost;
+	}
+
+	/**
+	 * weighted cost of all points of a source, read in batches
+	 * @param source
+	 * @param batchSize
+	 * @return
+	 * @throws IOException
+	 */
+	public double cost(PointSource source, int batchSize) throws IOException {
+		return assign(source, batchSize, null);
+	}
+
+	/**
+	 * assign all points of a source, read in batches, to their nearest centers
+	 * @param source
+	 * @param batchSize
+	 * @param labels labels[i] is set for the i-th point of the source, may be null,
+	 *        must hold a label for every point of the source
+	 * @return weighted cost
+	 * @throws IOException
+	 * @throws NumberIsTooSmallException if labels is too short, checked before each batch is copied
+	 */
+	public double assign(PointSource source, int batchSize, int[] labels) throws IOException {
+		PointBlock batch = new PointBlock(source.dimension(), batchSize);
+		int[] batchLabels = labels == null ? null : new int[batchSize];
+		double cost = 0;
+		int offset = 0;
+		int count;
+		while ((count = source.nextBatch(batch, batchSize)) > 0) {
+			if (labels != null && labels.length < offset + count) {
+				throw new NumberIsTooSmallException(labels.length, offset + count, true);
+			}
+			cost += assign(batch, batchLabels);
+			if (labels != null) {
+				System.arraycopy(batchLabels, 0, labels, offset, count);
+			}
+			offset += count;
+		}
+		return cost;
+	}
+
+	/**
+	 * nearest centers of points [from, to), tile by tile
+	 * @return weighted cost of the range
+	 */
+	private double assignRange(PointBlock points, int from, int to, int[] labels) {
+		final int d = points.dimension();
+		final int k = centers.size();
+		final double[] coords = points.coords();
+		final double[] weights = points.weights();
+		final double[] centerCoords = centers.coords();
+		final int centerTile = Math.max(1, CENTER_TILE_VALUES / Math.max(d, 1));
+		final double[] min = new double[POINT_TILE];
+		final int[] nearest = new int[POINT_TILE];
+		double cost = 0;
+		for (int p0=from; p0<to; p0+=POINT_TILE) {
+			int p1 = Math.min(p0 + POINT_TILE, to);
+			for (int i=0; i<p1-p0; i++) {
+				min[i] = Double.MAX_VALUE;
+				nearest[i] = 0;
+			}
+			for (int c0=0; c0<k; c0+=centerTile) {
+				int c1 = Math.min(c0 + centerTile, k);
+				for (int i=p0; i<p1; i++) {
+					// nearest of this tile, it wins only if strictly nearer than earlier tiles
+					int label = Distances.nearest(coords, i * d, centers, c0, c1);
+					double dist = Distances.squared(coords, i * d, centerCoords, label * d, d);
+					if (dist < min[i - p0]) {
+						min[i - p0] = dist;
+						nearest[i - p0] = label;
+					}
+				}
+			}
+			for (int i=p0; i<p1; i++) {
+				cost += min[i - p0] * weights[i];
+				if (labels != null) {
+					labels[i] = nearest[i - p0];
+				}
+			}
+		}
+		return cost;
+	}
+}
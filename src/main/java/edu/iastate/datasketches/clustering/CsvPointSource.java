@@ -0,0 +1,315 @@
+package edu.iastate.datasketches.clustering;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+/**
+ * Reads points from a numeric CSV file (one point per line, every column is
+ * a coordinate, weight 1) by memory-mapping it and parsing the bytes directly
+ * into a reused row. Numbers with at most 18 significant digits and a small
+ * exponent are converted exactly without creating objects, anything else
+ * (more digits, NaN, Infinity, ...) falls back to Double.parseDouble.
+ * The file is mapped in windows of 64 MB, a line must fit in one window.
+ */
+public class CsvPointSource implements PointSource {
+
+	private static final int WINDOW_SIZE = 1 << 26;
+
+	// powers of ten that are exact doubles
+	private static final double[] POW10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private final FileChannel channel;
+
+	private final long fileSize;
+
+	// current window of the file
+	private MappedByteBuffer buffer;
+
+	// file position of buffer index 0
+	private long windowStart;
+
+	// next byte to parse in the buffer
+	private int pos;
+
+	private final int dimension;
+
+	// coordinates of the line being parsed
+	private final double[] row;
+
+	// bytes of a number that needs the slow path
+	private byte[] scratch = new byte[32];
+
+	/**
+	 * map the file, the dimension is the number of columns of the first non-empty line
+	 * @param file
+	 * @throws IOException
+	 */
+	public CsvPointSource(File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.fileSize = channel.size();
+		map(0);
+		this.dimension = countColumns();
+		this.row = new double[dimension];
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	@Override
+	public int nextBatch(PointBlock batch, int maxPoints) throws IOException {
+		batch.clear();
+		int count = 0;
+		while (count < maxPoints && nextRow()) {
+			batch.add(row, 0, dimension, 1.0);
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		buffer = null;
+		channel.close();
+	}
+
+	/**
+	 * parse the next non-empty line into row
+	 * @return false at the end of the file
+	 * @throws IOException
+	 */
+	private boolean nextRow() throws IOException {
+		while (true) {
+			int end = lineEnd();
+			if (end < 0) {
+				return false;
+			}
+			int start = pos;
+			pos = end + 1;
+			int to = end;
+			if (to > start && buffer.get(to - 1) == '\r') {
+				to--;
+			}
+			if (isBlank(start, to)) {
+				continue;
+			}
+			parseLine(start, to);
+			return true;
+		}
+	}
+
+	/**
+	 * find the end of the line starting at pos, moving the window if the
+	 * line is cut by it
+	 * @return index of the '\n' (or of the end of the file), -1 if there is no line left
+	 * @throws IOException
+	 */
+	private int lineEnd() throws IOException {
+		int limit = buffer.limit();
+		if (pos >= limit && windowStart + limit >= fileSize) {
+			return -1;
+		}
+		for (int i=pos; i<limit; i++) {
+			if (buffer.get(i) == '\n') {
+				return i;
+			}
+		}
+		if (windowStart + limit >= fileSize) {
+			// last line without '\n'
+			return limit;
+		}
+		map(windowStart + pos);
+		limit = buffer.limit();
+		for (int i=pos; i<limit; i++) {
+			if (buffer.get(i) == '\n') {
+				return i;
+			}
+		}
+		if (windowStart + limit >= fileSize) {
+			return limit;
+		}
+		throw new IOException("line at byte " + windowStart + " is longer than " + WINDOW_SIZE + " bytes");
+	}
+
+	private void parseLine(int start, int end) {
+		int column = 0;
+		int from = start;
+		while (true) {
+			int to = from;
+			while (to < end && buffer.get(to) != ',') {
+				to++;
+			}
+			if (column >= dimension) {
+				throw new DimensionMismatchException(columnsOf(start, end), dimension);
+			}
+			row[column++] = parseDouble(from, to);
+			if (to == end) {
+				break;
+			}
+			from = to + 1;
+		}
+		if (column != dimension) {
+			throw new DimensionMismatchException(column, dimension);
+		}
+	}
+
+	/**
+	 * parse the number in bytes [from, to), surrounding blanks are ignored
+	 */
+	private double parseDouble(int from, int to) {
+		while (from < to && isBlank(buffer.get(from))) {
+			from++;
+		}
+		while (to > from && isBlank(buffer.get(to - 1))) {
+			to--;
+		}
+		int i = from;
+		boolean negative = false;
+		if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int significant = 0;
+		int exponent = 0;
+		boolean digits = false;
+		boolean exact = true;
+		while (i < to && isDigit(buffer.get(i))) {
+			int digit = buffer.get(i) - '0';
+			if (significant < 18) {
+				mantissa = mantissa * 10 + digit;
+				if (mantissa != 0) {
+					significant++;
+				}
+			}
+			else {
+				exponent++;
+				exact &= digit == 0;
+			}
+			digits = true;
+			i++;
+		}
+		if (i < to && buffer.get(i) == '.') {
+			i++;
+			while (i < to && isDigit(buffer.get(i))) {
+				int digit = buffer.get(i) - '0';
+				if (significant < 18) {
+					mantissa = mantissa * 10 + digit;
+					if (mantissa != 0) {
+						significant++;
+					}
+					exponent--;
+				}
+				else {
+					exact &= digit == 0;
+				}
+				digits = true;
+				i++;
+			}
+		}
+		if (digits && i < to && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+				negativeExponent = buffer.get(i) == '-';
+				i++;
+			}
+			int e = 0;
+			boolean exponentDigits = false;
+			while (i < to && isDigit(buffer.get(i))) {
+				e = Math.min(e * 10 + (buffer.get(i) - '0'), 10000);
+				exponentDigits = true;
+				i++;
+			}
+			digits = exponentDigits;
+			exponent += negativeExponent ? -e : e;
+		}
+		// exact conversion: the mantissa and 10^|exponent| are exact doubles
+		if (digits && exact && i == to && mantissa <= (1L << 53) && Math.abs(exponent) < POW10.length) {
+			double value = exponent < 0 ? mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+			return negative ? -value : value;
+		}
+		return slowParse(from, to);
+	}
+
+	private double slowParse(int from, int to) {
+		int length = to - from;
+		if (scratch.length < length) {
+			scratch = new byte[length];
+		}
+		for (int i=0; i<length; i++) {
+			scratch[i] = buffer.get(from + i);
+		}
+		return Double.parseDouble(new String(scratch, 0, length, StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * number of columns of the first non-empty line, 0 for an empty file
+	 * @throws IOException
+	 */
+	private int countColumns() throws IOException {
+		int start = pos;
+		long start0 = windowStart;
+		int columns = 0;
+		while (columns == 0) {
+			int end = lineEnd();
+			if (end < 0) {
+				break;
+			}
+			int from = pos;
+			pos = end + 1;
+			if (!isBlank(from, end)) {
+				columns = columnsOf(from, end);
+			}
+		}
+		// parse from the start again
+		if (windowStart != start0) {
+			map(start0);
+		}
+		pos = start;
+		return columns;
+	}
+
+	private int columnsOf(int start, int end) {
+		int columns = 1;
+		for (int i=start; i<end; i++) {
+			if (buffer.get(i) == ',') {
+				columns++;
+			}
+		}
+		return columns;
+	}
+
+	private boolean isBlank(int from, int to) {
+		for (int i=from; i<to; i++) {
+			if (!isBlank(buffer.get(i)) && buffer.get(i) != '\r') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isBlank(byte b) {
+		return b == ' ' || b == '\t';
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private void map(long start) throws IOException {
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+		windowStart = start;
+		pos = 0;
+	}
+}
@@ -0,0 +1,413 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NumberIsTooSmallException;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SketchesStateException;
+
+/**
+ * A KMeansSketch whose buckets live in a WritableMemory (off-heap from
+ * WritableMemory.allocateDirect or a memory-mapped file from
+ * WritableMemory.writableMap) instead of the Java heap.
+ * The memory starts with a header of HEADER_BYTES in the layout of the
+ * {@link PreambleUtil} preamble (family id 33, no pending buckets, room for
+ * the bucket counts of MAX_LEVELS levels), so the parameters and counters
+ * are stored with the buckets and {@link #writableWrap(WritableMemory)}
+ * can reattach a sketch to the same memory, e.g. a file mapped again
+ * after a restart. After the header the memory is divided into
+ * preallocated slots of m points of a dimension fixed at construction:
+ * slot 0 is bucket 0, level i of the coreset tree owns slots
+ * [1 + i*(r-1), 1 + (i+1)*(r-1)). A slot holds m*dimension row-major
+ * coordinates followed by m weights, like a bucket in the serialized
+ * format. Merge-reduce reads the r buckets of a level into a reused
+ * scratch array and writes the reduced coreset into the next level's free
+ * slot, so the heap only holds O(r*m*dimension) doubles. The bucket counts
+ * in the header are updated after the buckets of a merge are written.
+ * The sketch is meant to be fed and queried by one thread.
+ */
+public class DirectKMeansSketch {
+
+	// family id of the header, the serialized form uses PreambleUtil.FAMILY_ID
+	static final byte FAMILY_ID = 33;
+
+	// at most m * r^MAX_LEVELS points, more than any stream
+	static final int MAX_LEVELS = 64;
+
+	static final long HEADER_BYTES = PreambleUtil.preambleBytes(MAX_LEVELS);
+
+	// number of cluster centers
+	private final int k;
+
+	// bucket size
+	private final int m;
+
+	// merge threshold
+	private final int r;
+
+	// number of iterations for each trial
+	private final int iters;
+
+	// number of trials for computing cluster centers
+	private final int trials;
+
+	// how buckets are reduced and final centers are chosen
+	private final SeedingStrategy seeding;
+
+	private final int dimension;
+
+	private final WritableMemory mem;
+
+	// bytes of a slot
+	private final long slotBytes;
+
+	// number of levels that fit in the memory
+	private final int maxLevels;
+
+	// number of buckets at each level, mirrored in the header
+	private final int[] levelCounts;
+
+	// number of levels in use, mirrored in the header
+	private int numLevels;
+
+	// number of points in bucket 0, mirrored in the header
+	private int bucket0Size;
+
+	// scratch union of r buckets for merges
+	private final double[] unionCoords;
+
+	private final double[] unionWeights;
+
+	private final Random random = new Random();
+
+	/**
+	 * create an empty sketch, its header is written to dstMem
+	 * @param k
+	 * @param bucketSize
+	 * @param mergeThreshold
+	 * @param iters
+	 * @param trials
+	 * @param seeding
+	 * @param dimension number of coordinates of every point
+	 * @param dstMem memory for the buckets, see {@link #getRequiredBytes(int, int, int, int)}
+	 */
+	public DirectKMeansSketch(int k, int bucketSize, int mergeThreshold, int iters, int trials,
+			SeedingStrategy seeding, int dimension, WritableMemory dstMem) {
+		this(k, bucketSize, mergeThreshold, iters, trials, seeding, dimension, dstMem, 0);
+		PreambleUtil.putPreamble(mem, k, m, r, iters, trials, seeding, dimension, levelCounts, 0, 0, 0);
+		mem.putByte(PreambleUtil.FAMILY_BYTE, FAMILY_ID);
+	}
+
+	private DirectKMeansSketch(int k, int bucketSize, int mergeThreshold, int iters, int trials,
+			SeedingStrategy seeding, int dimension, WritableMemory dstMem, int numLevels) {
+		if (mergeThreshold < 2) {
+			throw new NumberIsTooSmallException(mergeThreshold, 2, true);
+		}
+		if (bucketSize < 1) {
+			throw new NumberIsTooSmallException(bucketSize, 1, true);
+		}
+		if (dimension < 1) {
+			throw new NumberIsTooSmallException(dimension, 1, true);
+		}
+		this.k = k;
+		this.m = bucketSize;
+		this.r = mergeThreshold;
+		this.iters = iters;
+		this.trials = trials;
+		this.seeding = seeding;
+		this.dimension = dimension;
+		this.mem = dstMem;
+		this.slotBytes = PreambleUtil.bucketBytes(m, dimension);
+		this.unionCoords = new double[PreambleUtil.checkArrayLength((long) r * m * dimension, "Union of r buckets")];
+		this.unionWeights = new double[r * m];
+		long numSlots = (dstMem.getCapacity() - HEADER_BYTES) / slotBytes;
+		this.maxLevels = (int) Math.min((numSlots - 1) / (r - 1), MAX_LEVELS);
+		if (numSlots < 1 || maxLevels < Math.max(numLevels, 1)) {
+			throw new SketchesArgumentException("Memory too small for " + Math.max(numLevels, 1) + " levels: " 
+					+ dstMem.getCapacity() + " < " + getRequiredBytes(m, r, dimension, Math.max(numLevels, 1)));
+		}
+		this.levelCounts = new int[maxLevels];
+	}
+
+	/**
+	 * reattach a sketch to the memory it was created in, the sketch
+	 * continues from the bucket counts stored in the header
+	 * @param srcMem
+	 * @return
+	 */
+	public static DirectKMeansSketch writableWrap(WritableMemory srcMem) {
+		if (srcMem.getCapacity() < HEADER_BYTES) {
+			throw new SketchesArgumentException("Memory too small for a DirectKMeansSketch: " + srcMem.getCapacity());
+		}
+		int serVer = srcMem.getByte(PreambleUtil.SER_VER_BYTE);
+		if (serVer != PreambleUtil.SER_VER) {
+			throw new SketchesArgumentException("Unsupported serialization version: " + serVer);
+		}
+		int family = srcMem.getByte(PreambleUtil.FAMILY_BYTE);
+		if (family != FAMILY_ID) {
+			throw new SketchesArgumentException("Not a DirectKMeansSketch, family id: " + family);
+		}
+		int seeding = srcMem.getByte(PreambleUtil.SEEDING_BYTE);
+		if (seeding < 0 || seeding >= SeedingStrategy.values().length) {
+			throw new SketchesArgumentException("Unknown seeding strategy: " + seeding);
+		}
+		int m = srcMem.getInt(PreambleUtil.M_INT);
+		int r = srcMem.getInt(PreambleUtil.R_INT);
+		int numLevels = srcMem.getInt(PreambleUtil.NUM_LEVELS_INT);
+		int bucket0Size = srcMem.getInt(PreambleUtil.BUCKET0_SIZE_INT);
+		if (numLevels < 0 || numLevels > MAX_LEVELS || bucket0Size < 0 || bucket0Size > m) {
+			throw new SketchesArgumentException("Corrupt DirectKMeansSketch header");
+		}
+		DirectKMeansSketch sketch = new DirectKMeansSketch(srcMem.getInt(PreambleUtil.K_INT), m, r,
+				srcMem.getInt(PreambleUtil.ITERS_INT), srcMem.getInt(PreambleUtil.TRIALS_INT),
+				SeedingStrategy.values()[seeding], srcMem.getInt(PreambleUtil.DIMENSION_INT), srcMem, numLevels);
+		for (int i=0; i<numLevels; i++) {
+			int count = srcMem.getInt(PreambleUtil.LEVEL_COUNTS_START + 4L * i);
+			if (count < 0 || count > r - 1) {
+				throw new SketchesArgumentException("Corrupt DirectKMeansSketch header");
+			}
+			sketch.levelCounts[i] = count;
+		}
+		sketch.numLevels = numLevels;
+		sketch.bucket0Size = bucket0Size;
+		return sketch;
+	}
+
+	/**
+	 * bytes of memory needed for a coreset tree of maxLevels levels,
+	 * which holds up to m * r^maxLevels points
+	 * @param m
+	 * @param r
+	 * @param dimension
+	 * @param maxLevels at most MAX_LEVELS
+	 * @return
+	 */
+	public static long getRequiredBytes(int m, int r, int dimension, int maxLevels) {
+		return HEADER_BYTES + (1 + (long) maxLevels * (r - 1)) * PreambleUtil.bucketBytes(m, dimension);
+	}
+
+	/**
+	 * update coreset tree upon every new point
+	 * @param p new point
+	 */
+	public void cluster(Point p) {
+		if (p.position.length != dimension) {
+			throw new DimensionMismatchException(p.position.length, dimension);
+		}
+		if (bucket0Size == m) {
+			// an earlier carry ran out of levels
+			bucket0Full();
+		}
+		mem.putDoubleArray(HEADER_BYTES + 8L * bucket0Size * dimension, p.position, 0, dimension);
+		mem.putDouble(HEADER_BYTES + 8L * ((long) m * dimension + bucket0Size), p.weight);
+		setBucket0Size(bucket0Size + 1);
+		if (bucket0Size == m) {
+			bucket0Full();
+		}
+	}
+
+	/**
+	 * update coreset tree with a batch of points stored row-major,
+	 * bucket 0 is filled in bulk and merged every time it is full
+	 * @param rows point j is rows[j*dimension, (j+1)*dimension)
+	 * @param weights weight of each point, null for weight 1
+	 */
+	public void clusterBatch(double[] rows, double[] weights) {
+		if (rows.length % dimension != 0) {
+			throw new DimensionMismatchException(rows.length % dimension, dimension);
+		}
+		int numPoints = rows.length / dimension;
+		if (weights != null && weights.length != numPoints) {
+			throw new DimensionMismatchException(weights.length, numPoints);
+		}
+		int j = 0;
+		while (j < numPoints) {
+			if (bucket0Size == m) {
+				// an earlier carry ran out of levels
+				bucket0Full();
+			}
+			int count = Math.min(m - bucket0Size, numPoints - j);
+			mem.putDoubleArray(HEADER_BYTES + 8L * bucket0Size * dimension, rows, j * dimension, count * dimension);
+			long weightOffset = HEADER_BYTES + 8L * ((long) m * dimension + bucket0Size);
+			if (weights != null) {
+				mem.putDoubleArray(weightOffset, weights, j, count);
+			}
+			else {
+				for (int l=0; l<count; l++) {
+					mem.putDouble(weightOffset + 8L * l, 1.0);
+				}
+			}
+			setBucket0Size(bucket0Size + count);
+			j += count;
+			if (bucket0Size == m) {
+				bucket0Full();
+			}
+		}
+	}
+
+	/**
+	 * Compute k centers from the coreset tree
+	 * @return list of k points as cluster centers
+	 */
+	public List<Point> getCenters() {
+		int unionSize = PreambleUtil.checkArrayLength(numBuckets() * m + bucket0Size, "Union of all buckets");
+		double[] coords = new double[PreambleUtil.checkArrayLength((long) unionSize * dimension, "Union of all buckets")];
+		double[] weights = new double[Math.max(unionSize, 1)];
+		int position = 0;
+		for (int i=0; i<numLevels; i++) {
+			for (int b=0; b<levelCounts[i]; b++) {
+				readSlot(slot(i, b), m, coords, weights, position);
+				position += m;
+			}
+		}
+		readSlot(0, bucket0Size, coords, weights, position);
+		PointBlock coresets = new PointBlock(dimension, unionSize, coords, weights);
+		return KMeansPlusPlus.multiKMeansPlusPlus(coresets, k, iters, trials, seeding).toPoints();
+	}
+
+	/**
+	 * Serialize the sketch into the format of {@link KMeansSketch#toByteArray()},
+	 * so it can be restored with KMeansSketch.heapify, wrapped with
+	 * WrappedKMeansSketch and merged with other sketches. A full bucket 0
+	 * left by a carry that ran out of levels is written as a pending bucket.
+	 * @return
+	 */
+	public byte[] toByteArray() {
+		int numPending = bucket0Size == m ? 1 : 0;
+		int size0 = bucket0Size - numPending * m;
+		long bytes = PreambleUtil.preambleBytes(numLevels) + (numBuckets() + numPending) * slotBytes
+				+ PreambleUtil.bucketBytes(size0, dimension);
+		byte[] out = new byte[PreambleUtil.checkArrayLength(bytes, "Serialized sketch")];
+		WritableMemory outMem = WritableMemory.wrap(out);
+		PreambleUtil.putPreamble(outMem, k, m, r, iters, trials, seeding, dimension, 
+				levelCounts, numLevels, numPending, size0);
+		
+		// slots have the serialized bucket layout
+		long offset = PreambleUtil.preambleBytes(numLevels);
+		for (int i=0; i<numLevels; i++) {
+			for (int b=0; b<levelCounts[i]; b++) {
+				mem.copyTo(slotOffset(slot(i, b)), outMem, offset, slotBytes);
+				offset += slotBytes;
+			}
+		}
+		if (numPending == 1) {
+			mem.copyTo(slotOffset(0), outMem, offset, slotBytes);
+			return out;
+		}
+		long coordBytes = 8L * size0 * dimension;
+		mem.copyTo(slotOffset(0), outMem, offset, coordBytes);
+		mem.copyTo(slotOffset(0) + 8L * m * dimension, outMem, offset + coordBytes, 8L * size0);
+		return out;
+	}
+
+	/**
+	 * copy the sketch to the heap
+	 * @return
+	 */
+	public KMeansSketch toHeap() {
+		return KMeansSketch.heapify(Memory.wrap(toByteArray()));
+	}
+
+	/**
+	 * carry the full bucket 0 into the coreset tree, merging every
+	 * level that already holds r-1 buckets. If the carry would need more
+	 * than maxLevels levels nothing is changed and bucket 0 stays full.
+	 */
+	private void bucket0Full() {
+		int top = 0;
+		while (top < numLevels && levelCounts[top] == r - 1) {
+			top++;
+		}
+		if (top == maxLevels) {
+			throw new SketchesStateException("Memory too small for more than " + maxLevels 
+					+ " levels, the sketch is unchanged and can still be queried");
+		}
+		// the carry is in slot 0 until the first merge
+		PointBlock bucketCarry = null;
+		for (int i=0; ; i++) {
+			if (i == numLevels) {
+				levelCounts[numLevels++] = 0;
+			}
+			// number of buckets at level i is less than (r-1),
+			// then no need to increment additionally
+			if (levelCounts[i] < r - 1) {
+				long offset = slotOffset(slot(i, levelCounts[i]++));
+				if (bucketCarry == null) {
+					mem.copyTo(slotOffset(0), mem, offset, slotBytes);
+				}
+				else {
+					PreambleUtil.putBlock(bucketCarry, mem, offset);
+				}
+				// the buckets are written, publish the counts
+				for (int l=0; l<=i; l++) {
+					mem.putInt(PreambleUtil.LEVEL_COUNTS_START + 4L * l, levelCounts[l]);
+				}
+				mem.putInt(PreambleUtil.NUM_LEVELS_INT, numLevels);
+				setBucket0Size(0);
+				return;
+			}
+			// union of the r-1 buckets at level i and the carry
+			for (int b=0; b<r-1; b++) {
+				readSlot(slot(i, b), m, unionCoords, unionWeights, b * m);
+			}
+			if (bucketCarry == null) {
+				readSlot(0, m, unionCoords, unionWeights, (r - 1) * m);
+			}
+			else {
+				System.arraycopy(bucketCarry.coords(), 0, unionCoords, (r - 1) * m * dimension, m * dimension);
+				System.arraycopy(bucketCarry.weights(), 0, unionWeights, (r - 1) * m, m);
+			}
+			PointBlock unionSet = new PointBlock(dimension, r * m, unionCoords, unionWeights);
+			bucketCarry = seeding.seed(unionSet, m, random);
+			// empty this level
+			levelCounts[i] = 0;
+		}
+	}
+
+	/**
+	 * @return number of buckets in the coreset tree
+	 */
+	private long numBuckets() {
+		long numBuckets = 0;
+		for (int i=0; i<numLevels; i++) {
+			numBuckets += levelCounts[i];
+		}
+		return numBuckets;
+	}
+
+	private void setBucket0Size(int size) {
+		bucket0Size = size;
+		mem.putInt(PreambleUtil.BUCKET0_SIZE_INT, size);
+	}
+
+	/**
+	 * @param slot
+	 * @return byte offset of a slot
+	 */
+	private long slotOffset(long slot) {
+		return HEADER_BYTES + slot * slotBytes;
+	}
+
+	/**
+	 * @param level
+	 * @param b
+	 * @return index of slot b of a level
+	 */
+	private long slot(int level, int b) {
+		return 1 + (long) level * (r - 1) + b;
+	}
+
+	/**
+	 * read the first size points of a slot into arrays at point position
+	 */
+	private void readSlot(long slot, int size, double[] coords, double[] weights, int position) {
+		long offset = slotOffset(slot);
+		mem.getDoubleArray(offset, coords, position * dimension, size * dimension);
+		mem.getDoubleArray(offset + 8L * m * dimension, weights, position, size);
+	}
+}
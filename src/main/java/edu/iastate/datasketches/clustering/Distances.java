@@ -0,0 +1,149 @@
+package edu.iastate.datasketches.clustering;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+/**
+ * Squared euclidean distance kernels.
+ * All callers only need D^2, so no square root is taken. The inner loops
+ * keep four independent accumulators so that consecutive coordinates do not
+ * wait on each other, which lets the JIT pipeline (and on recent JVMs
+ * vectorize) the subtractions and multiplications.
+ */
+public final class Distances {
+
+	private Distances() {
+	}
+
+	/**
+	 * squared distance between two positions
+	 * @param a
+	 * @param b
+	 * @return
+	 * @throws DimensionMismatchException
+	 */
+	public static double squared(double[] a, double[] b) throws DimensionMismatchException {
+		if (a.length != b.length) {
+			throw new DimensionMismatchException(b.length, a.length);
+		}
+		return squared(a, 0, b, 0, a.length);
+	}
+
+	/**
+	 * squared distance between a[aOff, aOff+d) and b[bOff, bOff+d)
+	 * @param a
+	 * @param aOff
+	 * @param b
+	 * @param bOff
+	 * @param d dimension
+	 * @return
+	 */
+	public static double squared(double[] a, int aOff, double[] b, int bOff, int d) {
+		double s0 = 0;
+		double s1 = 0;
+		double s2 = 0;
+		double s3 = 0;
+		int l = 0;
+		for (; l + 3 < d; l += 4) {
+			double d0 = a[aOff + l] - b[bOff + l];
+			double d1 = a[aOff + l + 1] - b[bOff + l + 1];
+			double d2 = a[aOff + l + 2] - b[bOff + l + 2];
+			double d3 = a[aOff + l + 3] - b[bOff + l + 3];
+			s0 += d0 * d0;
+			s1 += d1 * d1;
+			s2 += d2 * d2;
+			s3 += d3 * d3;
+		}
+		for (; l < d; l++) {
+			double diff = a[aOff + l] - b[bOff + l];
+			s0 += diff * diff;
+		}
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * squared distance from one position to every point of a block
+	 * (one center vs. a block of points)
+	 * @param q query coordinates q[qOff, qOff+d)
+	 * @param qOff
+	 * @param block
+	 * @param out out[i] is set to the squared distance to point i, length >= block.size()
+	 */
+	public static void squaredToAll(double[] q, int qOff, PointBlock block, double[] out) {
+		squaredToRange(q, qOff, block, 0, block.size(), out);
+	}
+
+	/**
+	 * squared distance from one position to points [from, to) of a block
+	 * @param q query coordinates q[qOff, qOff+d)
+	 * @param qOff
+	 * @param block
+	 * @param from
+	 * @param to
+	 * @param out out[i] is set to the squared distance to point i
+	 */
+	public static void squaredToRange(double[] q, int qOff, PointBlock block, int from, int to, double[] out) {
+		final int d = block.dimension();
+		final double[] coords = block.coords();
+		for (int i=from; i<to; i++) {
+			out[i] = squared(q, qOff, coords, i * d, d);
+		}
+	}
+
+	/**
+	 * minimum squared distance from one position to all points of a block
+	 * (one point vs. a block of centers)
+	 * @param q query coordinates q[qOff, qOff+d)
+	 * @param qOff
+	 * @param centers
+	 * @return Double.MAX_VALUE if centers is empty
+	 */
+	public static double minSquared(double[] q, int qOff, PointBlock centers) {
+		final int d = centers.dimension();
+		final double[] coords = centers.coords();
+		double min = Double.MAX_VALUE;
+		for (int c=0; c<centers.size(); c++) {
+			double dist = squared(q, qOff, coords, c * d, d);
+			if (dist < min) {
+				min = dist;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * index of the nearest point of a block to one position
+	 * (one point vs. a block of centers), ties go to the lowest index
+	 * @param q query coordinates q[qOff, qOff+d)
+	 * @param qOff
+	 * @param centers
+	 * @return -1 if centers is empty
+	 */
+	public static int nearest(double[] q, int qOff, PointBlock centers) {
+		return nearest(q, qOff, centers, 0, centers.size());
+	}
+
+	/**
+	 * index of the nearest of points [from, to) of a block to one position,
+	 * ties go to the lowest index
+	 * @param q query coordinates q[qOff, qOff+d)
+	 * @param qOff
+	 * @param centers
+	 * @param from
+	 * @param to
+	 * @return -1 if the range is empty
+	 */
+	public static int nearest(double[] q, int qOff, PointBlock centers, int from, int to) {
+		final int d = centers.dimension();
+		final double[] coords = centers.coords();
+		double min = Double.MAX_VALUE;
+		int index = -1;
+		for (int c=from; c<to; c++) {
+			double dist = squared(q, qOff, coords, c * d, d);
+			if (dist < min) {
+				min = dist;
+				index = c;
+			}
+		}
+		return index;
+	}
+}
@@ -1,32 +1,47 @@
-
-package edu.iastate.datasketches.clustering;
-
-import java.io.File;
-import java.io.FileWriter;
-import java.util.Scanner;
-
-public class FileParser {
-
-	public static void main(String[] args) throws Exception{
-		File f = new File("E:/dataset/clean/shuttle.txt");
-		Scanner sc = new Scanner(f);
-		FileWriter fw = new FileWriter(new File("shuttle.txt"));
-		while (sc.hasNextLine()) {
-			// String str = "";
-			String line = sc.nextLine();
-			String[] attrs = line.split(",");
-			if (attrs.length == 9) {
-				fw.write(line + "\n");
-			}
-//			for (int i=1; i<attrs.length; i++) {
-//				String[] nums = attrs[i].split(":");
-//				str += nums[1] + ",";
-//			}
-//			str = str.substring(0, str.length()-1);
-//			fw.write(str + "\n");
-		}
-		sc.close();
-		fw.close();
-	}
-
-}
+package edu.iastate.datasketches.clustering;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Converts a numeric CSV file into the binary point format
+ * (see {@link BinaryPointWriter}), so it is parsed only once.
+ * Usage: FileParser input.csv output.bin [float32]
+ */
+public class FileParser {
+
+	private static final int BATCH_SIZE = 4096;
+
+	public static void main(String[] args) throws Exception{
+		if (args.length < 2) {
+			System.err.println("usage: FileParser input.csv output.bin [float32]");
+			return;
+		}
+		boolean float32 = args.length > 2 && "float32".equals(args[2]);
+		long count = convert(new File(args[0]), new File(args[1]), float32);
+		System.out.println("converted " + count + " points");
+	}
+
+	/**
+	 * stream the points of a CSV file (weight 1) into a binary point file
+	 * @param csv
+	 * @param out
+	 * @param float32 store float32 instead of float64 values
+	 * @return number of points
+	 * @throws IOException
+	 */
+	public static long convert(File csv, File out, boolean float32) throws IOException {
+		long count = 0;
+		try (CsvPointSource source = new CsvPointSource(csv);
+				BinaryPointWriter writer = new BinaryPointWriter(out, source.dimension(), float32, false)) {
+			PointBlock batch = new PointBlock(source.dimension(), BATCH_SIZE);
+			int n;
+			while ((n = source.nextBatch(batch, BATCH_SIZE)) > 0) {
+				writer.write(batch);
+				count += n;
+			}
+		}
+		return count;
+	}
+
+}
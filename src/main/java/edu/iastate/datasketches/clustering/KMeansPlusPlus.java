@@ -1,387 +1,742 @@
-
-package edu.iastate.datasketches.clustering;
-
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
-
-import org.apache.commons.math3.exception.NumberIsTooSmallException;
-import org.apache.commons.math3.ml.clustering.CentroidCluster;
-import org.apache.commons.math3.ml.clustering.KMeansPlusPlusClusterer;
-import org.apache.commons.math3.ml.clustering.MultiKMeansPlusPlusClusterer;
-import org.apache.commons.math3.util.Pair;
-
-public class KMeansPlusPlus {
-
-	/**
-	 * TODO: revise to make clean
-	 * @param points
-	 * @param k
-	 * @param maxIterations
-	 * @param numTrials
-	 * @return
-	 */
-	public static List<Point> multiKMeansPlusPlus(List<Point> points, int k, int maxIterations, int numTrials) {
-//		KMeansPlusPlusClusterer<Point> clusterer = new KMeansPlusPlusClusterer<Point>(k, maxIterations);
-//		MultiKMeansPlusPlusClusterer<Point> multiClusterer = new MultiKMeansPlusPlusClusterer<Point>(clusterer,
-//				numTrials);
-//		List<CentroidCluster<Point>> centers = multiClusterer.cluster(points);
-//		List<Point> res = new ArrayList<>();
-//		for (CentroidCluster<Point> c : centers) {
-//			res.add(new Point(c.getCenter().getPoint(), 1));
-//		}
-//		return res;
-		
-		return KMeansPlusPlus.fastSeeding(points, k);
-	}
-	
-	/**
-	 * uniformly select points (un-weighted)
-	 * @param pointList
-	 * @param m
-	 * @param random
-	 * @return
-	 */
-	public static List<Point> randomCenters(final List<Point> pointList, int m) {
-		int numOfPoints = pointList.size();
-		int[] pointIndex = new int[numOfPoints];
-		for (int i=0; i<numOfPoints; i++) {
-			pointIndex[i] = i;
-		}
-		
-		Random random = new Random();
-		List<Integer> centerIndex = new ArrayList<>();
-		for (int i=0; i<m; i++) {
-			int index = random.nextInt(numOfPoints-i);
-			centerIndex.add(index);
-			// swap a[index] and a[numOfPoints-1-i]
-			int temp = pointIndex[numOfPoints-1-i];
-			pointIndex[numOfPoints-1-i] = pointIndex[index];
-			pointIndex[index] = temp;
-		}
-		
-		List<Point> resultList = new ArrayList<>();
-		for (int i : centerIndex) {
-			resultList.add(new Point(pointList.get(i)));
-		}
-		return resultList;
-	}
-	
-	/**
-     * Use K-means++ to choose the initial centers.
-     * @param points the points to choose the initial centers from
-     * @return the initial centers (not weighted)
-     */
-    public static List<Point> seeding(final List<Point> pointList, int m) {
-
-        // The number of points in the list.
-        final int numPoints = pointList.size();
-        // Set the corresponding element in this array to indicate when
-        // elements of pointList are no longer available.
-        final boolean[] taken = new boolean[numPoints];
-        // The resulting list of initial centers.
-        final List<Point> resultSet = new ArrayList<>();
-
-        // random generator
-        Random random = new Random();
-        
-        // choose first center uniformly at random from points
-		double sumOfWeights = 0;
-		double[] pointWeights = new double[pointList.size()];
-		for (int i=0; i<pointList.size(); i++) {
-    		pointWeights[i] = pointList.get(i).weight;
-    		sumOfWeights += pointWeights[i];
-    	}
-		int firstPointIndex = sampleByWeight(pointWeights, random.nextDouble() * sumOfWeights);
-        final Point firstPoint = pointList.get(firstPointIndex);
-        resultSet.add(new Point(firstPoint));
-
-        // Must mark it as taken
-        taken[firstPointIndex] = true;
-        // To keep track of the minimum distance squared of elements of
-        // pointList to elements of resultSet.
-        final double[] minDistSquared = new double[numPoints];
-
-        // Initialize the elements.  Since the only point in resultSet is firstPoint,
-        // this is very easy.
-        for (int i = 0; i < numPoints; i++) {
-            if (i != firstPointIndex) { // That point isn't considered
-                double d = firstPoint.euclidDistTo(pointList.get(i));
-                minDistSquared[i] = d*d*pointList.get(i).weight;
-            }
-        }
-        while (resultSet.size() < m) {
-            // Sum up the squared distances for the points in pointList not
-            // already taken.
-            double distSqSum = 0.0;
-            for (int i = 0; i < numPoints; i++) {
-                if (!taken[i]) {
-                    distSqSum += minDistSquared[i];
-                }
-            }
-
-            // Add one new data point as a center. Each point x is chosen with
-            // probability proportional to D(x)2
-            final double r = random.nextDouble() * distSqSum;
-
-            // The index of the next point to be added to the resultSet.
-            int nextPointIndex = -1;
-
-            // Sum through the squared min distances again, stopping when
-            // sum >= r.
-            double sum = 0.0;
-            for (int i = 0; i < numPoints; i++) {
-                if (!taken[i]) {
-                    sum += minDistSquared[i];
-                    if (sum >= r) {
-                        nextPointIndex = i;
-                        break;
-                    }
-                }
-            }
-
-            // If it's not set to >= 0, the point wasn't found in the previous
-            // for loop, probably because distances are extremely small.  Just pick
-            // the last available point.
-            if (nextPointIndex == -1) {
-                for (int i = numPoints - 1; i >= 0; i--) {
-                    if (!taken[i]) {
-                        nextPointIndex = i;
-                        break;
-                    }
-                }
-            }
-
-            // We found one.
-            if (nextPointIndex >= 0) {
-                final Point p = pointList.get(nextPointIndex);
-                resultSet.add(new Point(p));
-                // Mark it as taken.
-                taken[nextPointIndex] = true;
-                if (resultSet.size() < m) {
-                    // Now update elements of minDistSquared.  We only have to compute
-                    // the distance to the new center to do this.
-                    for (int j = 0; j < numPoints; j++) {
-                        // Only have to worry about the points still not taken.
-                        if (!taken[j]) {
-                            double d = p.euclidDistTo(pointList.get(j));
-                            double d2 = d * d * pointList.get(j).weight;
-                            if (d2 < minDistSquared[j]) {
-                                minDistSquared[j] = d2;
-                            }
-                        }
-                    }
-                }
-            } else {
-                // None found --
-                // Break from the while loop to prevent
-                // an infinite loop.
-                break;
-            }
-        }
-        return resultSet;
-    }
-	
-	/**
-	 * D^2 sampling acceleration by coreset tree
-	 * Note our input points are weighted
-	 * (StreamKM++: A Clustering Algorithm for Data Streams, by Ackermann et al)
-	 * @param points
-	 * @param m
-	 * @return
-	 * @throws IOException 
-	 */
-	public static List<Point> fastSeeding(final List<Point> points, int m) {
-		if (points.size() < m) {
-			throw new NumberIsTooSmallException(points.size(), m, false);
-		}
-
-		// random generator for sampling
-		Random randSeed = new Random();
-		
-		// choose first center uniformly at random from points
-        // Note: as each input point is weighted, we sample by each point's weight,
-		// so higher weight means higher probability to be selected
-		double sumOfWeights = 0;
-		double[] pointWeights = new double[points.size()];
-		for (int i=0; i<points.size(); i++) {
-    		pointWeights[i] = points.get(i).weight;
-    		sumOfWeights += pointWeights[i];
-    	}
-		int firstCenterIndex = sampleByWeight(pointWeights, sumOfWeights * randSeed.nextDouble());
-		Point firstCenter = points.get(firstCenterIndex);
-		
-		// create first center and root node
-		TreeNode root = new TreeNode(firstCenter); 
-		double sumOfCost = 0;
-		for (int i=0; i<points.size(); i++) {
-			if (i == firstCenterIndex) {
-				continue;
-			}
-			// Note: we can have a shallow copy here
-			Point p = points.get(i);
-			// distance to new center
-			double dist2Center = p.euclidDistTo(firstCenter);  
-			// weighted-cost (D^2) to new center
-			double cost = dist2Center * dist2Center * p.weight;
-			sumOfCost += cost;
-			Pair<Point, Double> pair = new Pair<>(p, cost);
-			root.members.add(pair);
-		}
-		root.weight = sumOfCost;
-		root.numMembers = points.size() - 1;
-
-		// generate 2 to m centers
-		int numOfCenters = 1;
-		while (numOfCenters < m) {
-			// find leaf node
-			TreeNode node = root;
-			while (node.left != null && node.right != null) {
-				// first check if left child or right child has a 
-				// "free" member point (not assigned as center),
-				// if not, we should choose the other child anyway
-				if (node.left.numMembers == 0) {
-					node = node.right;
-					continue;
-				}
-				if (node.right.numMembers == 0) {
-					node = node.left;
-					continue;
-				}
-				
-				double leftNodeWeight = node.left.weight;
-				double rightNodeWeight = node.right.weight;
-				// sample by weights of two child nodes
-				if (randSeed.nextDouble() < (leftNodeWeight / (leftNodeWeight + rightNodeWeight))) {
-					node = node.left;
-				}
-				else {
-					node = node.right;
-				}
-			}
-			
-			// choose one point in the leaf node P_l based on 
-			// the D^2 sampling to the center of P_l
-			Point leafCenter = node.center;
-			List<Pair<Point, Double>> leafPoints = node.members;
-			
-			// compute weighted-squared-distance to the center,
-			// which is equal to the cost to the center and we
-			// have already computed
-			double distSqSum = node.weight;
-	        double[] squaredDist = new double[leafPoints.size()];
-	        for (int i = 0; i < leafPoints.size(); i++) {
-	        	squaredDist[i] = leafPoints.get(i).getSecond();
-            }
-            
-            // sample next center
-            int nextCenterIndex = sampleByWeight(squaredDist, distSqSum * randSeed.nextDouble());
-			Point nextCenter = leafPoints.get(nextCenterIndex).getFirst();
-			
-			// generate left child TreeNode with previous leaf center (see Fig 2. in the paper)
-			TreeNode leftChildNode = new TreeNode(leafCenter);
-			// generate right child TreeNode with new center
-			TreeNode rightChildNode = new TreeNode(nextCenter);
-			double leftChildWeight = 0;
-			double rightChildWeight = 0;
-			for (int i=0; i<leafPoints.size(); i++) {
-				if (i == nextCenterIndex) {
-					continue;
-				}
-				
-				// cost to the previous center is already computed
-				Point p = leafPoints.get(i).getFirst();
-				double cost = leafPoints.get(i).getSecond();
-				// compute weighted-cost of each point to the new center
-				double dist2Center = p.euclidDistTo(nextCenter);
-				double cost2Center = dist2Center * dist2Center * p.weight;
-				if (cost < cost2Center) {
-					// add point p to left child TreeNode
-					// shallow copy
-					leftChildNode.members.add(new Pair<Point, Double>(p, cost));
-					leftChildWeight += cost;
-				}
-				else {
-					// add point p to right child TreeNode
-					// shallow copy
-					rightChildNode.members.add(new Pair<Point, Double>(p, cost2Center));
-					rightChildWeight += cost2Center;
-				}
-			}
-			// assign weight and numMembers of two child nodes
-			leftChildNode.weight = leftChildWeight;
-			leftChildNode.numMembers = leftChildNode.members.size();
-			
-			rightChildNode.weight = rightChildWeight;
-			rightChildNode.numMembers = rightChildNode.members.size();
-			
-			// link tree nodes
-			node.left = leftChildNode;
-			node.right = rightChildNode;
-			leftChildNode.parent = node;
-			rightChildNode.parent = node;
-			
-			// propagate update of weight and numMembers attribute upwards to node root
-			while (node != null) {
-				// weight attribute of an inner node is defined as 
-				// the sum of the weights of its child nodes
-				node.weight = node.left.weight + node.right.weight;
-				node.numMembers--;
-				node = node.parent;
-			}
-			
-			// new center found (Don't forget)
-			numOfCenters++;
-		}
-		
-		// all leaf nodes in the tree are centers
-		final List<Point> resultSet = new ArrayList<>();
-		dfs(root, resultSet);
-		return resultSet;
-	}
-
-	/**
-	 * sum through the nums, stopping when sum >= r.
-	 * @param nums
-	 * @param r
-	 * @return
-	 */
-	private static int sampleByWeight(double[] nums, double r) {
-		double sum = 0.0;
-		for (int i=0; i<nums.length; i++) {
-			sum += nums[i];
-			if (sum >= r) {
-				return i;
-			}
-		}
-		// the point wasn't found in the previous for loop, 
-		// probably because distances are extremely small.  
-		// Just pick the last available point.
-		return (nums.length-1);
-	}
-	
-	/**
-	 * retrieve all leaf nodes centers
-	 * Note: we can not have a shallow copy for returned center
-	 * @param node
-	 * @param resultSet
-	 */
-	private static void dfs(TreeNode node, final List<Point> resultSet) {
-		// leaf node
-		if (node.left==null && node.right==null) {
-			double weight = node.center.weight;
-			for (Pair<Point, Double> pair : node.members) {
-				weight += pair.getFirst().weight;
-			}
-			final Point center = new Point(node.center.position, weight);
-			resultSet.add(center);
-			return;
-		}
-		
-		// inner node
-		dfs(node.left, resultSet);
-		dfs(node.right, resultSet);
-	}
-	
-}
+
+package edu.iastate.datasketches.clustering;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.exception.NumberIsTooSmallException;
+import org.apache.commons.math3.util.Pair;
+
+public class KMeansPlusPlus {
+	
+	// fastSeeding evaluates a tree node in parallel when it has more members than this
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 15;
+	
+	// number of sampling rounds of k-means||
+	public static final int DEFAULT_KMEANS_PARALLEL_ROUNDS = 5;
+	
+	// k-means|| samples about this many times m candidates per round
+	public static final double DEFAULT_OVERSAMPLING_FACTOR = 2.0;
+	
+	// chunk of points handled by one k-means|| task
+	private static final int KMEANS_PARALLEL_CHUNK_SIZE = 4096;
+
+	/**
+	 * copy points into a block and run {@link #multiKMeansPlusPlus(PointBlock, int, int, int)}
+	 * @param points
+	 * @param k
+	 * @param maxIterations
+	 * @param numTrials
+	 * @return
+	 */
+	public static List<Point> multiKMeansPlusPlus(List<Point> points, int k, int maxIterations, int numTrials) {
+		return multiKMeansPlusPlus(PointBlock.fromPoints(points), k, maxIterations, numTrials).toPoints();
+	}
+	
+	/**
+	 * run {@link #multiKMeansPlusPlus(PointBlock, int, int, int, SeedingStrategy)}
+	 * with fastSeeding
+	 * @param points
+	 * @param k
+	 * @param maxIterations
+	 * @param numTrials
+	 * @return
+	 */
+	public static PointBlock multiKMeansPlusPlus(PointBlock points, int k, int maxIterations, int numTrials) {
+		return multiKMeansPlusPlus(points, k, maxIterations, numTrials, SeedingStrategy.FAST_SEEDING);
+	}
+	
+	/**
+	 * Run numTrials independent trials of seeding followed by at most
+	 * maxIterations weighted Lloyd's iterations, and keep the centers
+	 * with the lowest cost. Trials run on the common fork-join pool and
+	 * share the (read-only) points.
+	 * @param points
+	 * @param k
+	 * @param maxIterations
+	 * @param numTrials
+	 * @param seeding how to choose the initial centers
+	 * @return k weighted centers, the weight of a center is the total weight of its points
+	 */
+	public static PointBlock multiKMeansPlusPlus(final PointBlock points, final int k, final int maxIterations,
+			int numTrials, final SeedingStrategy seeding) {
+		// draw the seeds of all trials up front
+		Random random = new Random();
+		final long[] seeds = new long[Math.max(numTrials, 1)];
+		for (int t=0; t<seeds.length; t++) {
+			seeds[t] = random.nextLong();
+		}
+		
+		List<Future<Pair<PointBlock, Double>>> trials = new ArrayList<>();
+		for (final long seed : seeds) {
+			Callable<Pair<PointBlock, Double>> trial = new Callable<Pair<PointBlock, Double>>() {
+				@Override
+				public Pair<PointBlock, Double> call() {
+					PointBlock centers = seeding.seed(points, k, new Random(seed));
+					double cost = Lloyd.refineBounded(points, centers, maxIterations);
+					return new Pair<>(centers, cost);
+				}
+			};
+			trials.add(ForkJoinPool.commonPool().submit(trial));
+		}
+		
+		// keep the centers with lowest cost
+		PointBlock best = null;
+		double bestCost = Double.MAX_VALUE;
+		for (Future<Pair<PointBlock, Double>> trial : trials) {
+			Pair<PointBlock, Double> result;
+			try {
+				result = trial.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+			if (best == null || result.getSecond() < bestCost) {
+				best = result.getFirst();
+				bestCost = result.getSecond();
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * uniformly select points (un-weighted)
+	 * @param pointList
+	 * @param m
+	 * @param random
+	 * @return
+	 */
+	public static List<Point> randomCenters(final List<Point> pointList, int m) {
+		int numOfPoints = pointList.size();
+		int[] pointIndex = new int[numOfPoints];
+		for (int i=0; i<numOfPoints; i++) {
+			pointIndex[i] = i;
+		}
+		
+		Random random = new Random();
+		List<Integer> centerIndex = new ArrayList<>();
+		for (int i=0; i<m; i++) {
+			int index = random.nextInt(numOfPoints-i);
+			centerIndex.add(index);
+			// swap a[index] and a[numOfPoints-1-i]
+			int temp = pointIndex[numOfPoints-1-i];
+			pointIndex[numOfPoints-1-i] = pointIndex[index];
+			pointIndex[index] = temp;
+		}
+		
+		List<Point> resultList = new ArrayList<>();
+		for (int i : centerIndex) {
+			resultList.add(new Point(pointList.get(i)));
+		}
+		return resultList;
+	}
+	
+	/**
+     * Use K-means++ to choose the initial centers.
+     * @param points the points to choose the initial centers from
+     * @return the initial centers, the weight of a center is the total
+     *         weight of the points closest to it
+     */
+    public static List<Point> seeding(final List<Point> pointList, int m) {
+        return seeding(PointBlock.fromPoints(pointList), m).toPoints();
+    }
+
+	/**
+     * Use K-means++ to choose the initial centers.
+     * @param points the points to choose the initial centers from
+     * @return the initial centers, the weight of a center is the total
+     *         weight of the points closest to it
+     */
+    public static PointBlock seeding(final PointBlock pointList, int m) {
+        return seeding(pointList, m, new Random());
+    }
+
+	/**
+     * Use K-means++ to choose the initial centers.
+     * @param points the points to choose the initial centers from
+     * @param random random generator for sampling
+     * @return the initial centers, the weight of a center is the total
+     *         weight of the points closest to it
+     * @throws NumberIsTooSmallException if there are fewer than m points
+     */
+    public static PointBlock seeding(final PointBlock pointList, int m, final Random random) {
+
+        // The number of points in the block.
+        final int numPoints = pointList.size();
+        if (numPoints < m) {
+            throw new NumberIsTooSmallException(numPoints, m, false);
+        }
+        // Set the corresponding element in this array to indicate when
+        // elements of pointList are no longer available.
+        final boolean[] taken = new boolean[numPoints];
+        // The resulting block of initial centers.
+        final PointBlock resultSet = new PointBlock(pointList.dimension(), m);
+
+        // Sum tree over the weights for the first center, then over the
+        // weighted squared distances of the points not already taken.
+        final SumTree sampler = new SumTree(numPoints);
+
+        // choose first center uniformly at random from points
+        sampler.build(pointList.weights());
+		int firstPointIndex = sampler.sample(0, numPoints, random.nextDouble());
+        resultSet.add(pointList, firstPointIndex);
+
+        // Must mark it as taken
+        taken[firstPointIndex] = true;
+        // To keep track of the minimum distance squared of elements of
+        // pointList to elements of resultSet.
+        final double[] minDistSquared = new double[numPoints];
+        // index in resultSet of the nearest center, initially the first one
+        final int[] nearest = new int[numPoints];
+
+        // Initialize the elements.  Since the only point in resultSet is firstPoint,
+        // this is very easy.
+        final int dimension = pointList.dimension();
+        final double[] coords = pointList.coords();
+        Distances.squaredToAll(coords, firstPointIndex * dimension, pointList, minDistSquared);
+        for (int i = 0; i < numPoints; i++) {
+            minDistSquared[i] *= pointList.weight(i);
+        }
+        // That point isn't considered
+        minDistSquared[firstPointIndex] = 0;
+        sampler.build(minDistSquared);
+        // scratch buffer for the squared distances to a new center
+        final double[] distToCenter = new double[numPoints];
+        while (resultSet.size() < m) {
+            // Add one new data point as a center. Each point x is chosen with
+            // probability proportional to D(x)2. Taken points have no mass
+            // in the sum tree.
+            // The index of the next point to be added to the resultSet.
+            int nextPointIndex = sampler.search(random.nextDouble() * sampler.total());
+            if (nextPointIndex >= 0 && taken[nextPointIndex]) {
+                nextPointIndex = -1;
+            }
+
+            // If it's not set to >= 0, the point wasn't found in the previous
+            // for loop, probably because distances are extremely small.  Just pick
+            // the last available point.
+            if (nextPointIndex == -1) {
+                for (int i = numPoints - 1; i >= 0; i--) {
+                    if (!taken[i]) {
+                        nextPointIndex = i;
+                        break;
+                    }
+                }
+            }
+
+            // We found one.
+            if (nextPointIndex >= 0) {
+                resultSet.add(pointList, nextPointIndex);
+                final int center = resultSet.size() - 1;
+                // Mark it as taken.
+                taken[nextPointIndex] = true;
+                minDistSquared[nextPointIndex] = 0;
+                nearest[nextPointIndex] = center;
+                sampler.set(nextPointIndex, 0);
+                // Now update elements of minDistSquared.  We only have to compute
+                // the distance to the new center to do this. This is also done
+                // for the last center to know the nearest center of each point.
+                Distances.squaredToAll(coords, nextPointIndex * dimension, pointList, distToCenter);
+                for (int j = 0; j < numPoints; j++) {
+                    // Only have to worry about the points still not taken.
+                    if (!taken[j]) {
+                        double d2 = distToCenter[j] * pointList.weight(j);
+                        if (d2 < minDistSquared[j]) {
+                            minDistSquared[j] = d2;
+                            nearest[j] = center;
+                            sampler.set(j, d2);
+                        }
+                    }
+                }
+            } else {
+                // None found --
+                // Break from the while loop to prevent
+                // an infinite loop.
+                break;
+            }
+        }
+        assignNearestWeights(pointList, nearest, resultSet);
+        return resultSet;
+    }
+	
+	/**
+	 * K-means++ seeding where the update of the minimum squared distances
+	 * against every new center runs on the common fork-join pool.
+	 * Sampling stays on the calling thread, so for a fixed random generator
+	 * the result is the same as {@link #seeding(PointBlock, int, Random)}.
+	 * @param pointList the points to choose the initial centers from
+	 * @param m
+	 * @param random random generator for sampling
+	 * @return the initial centers, the weight of a center is the total
+	 *         weight of the points closest to it
+	 * @throws NumberIsTooSmallException if there are fewer than m points
+	 */
+	public static PointBlock parallelSeeding(final PointBlock pointList, int m, final Random random) {
+		final int numPoints = pointList.size();
+		if (numPoints < m) {
+			throw new NumberIsTooSmallException(numPoints, m, false);
+		}
+		final boolean[] taken = new boolean[numPoints];
+		final PointBlock resultSet = new PointBlock(pointList.dimension(), m);
+		final SumTree sampler = new SumTree(numPoints);
+		final int chunkSize = SeedingUpdateTask.chunkSize(numPoints);
+		
+		// choose first center by weight
+		sampler.build(pointList.weights());
+		int nextPointIndex = sampler.sample(0, numPoints, random.nextDouble());
+		
+		final double[] minDistSquared = new double[numPoints];
+		final int[] nearest = new int[numPoints];
+		Arrays.fill(minDistSquared, Double.MAX_VALUE);
+		while (true) {
+			resultSet.add(pointList, nextPointIndex);
+			final int center = resultSet.size() - 1;
+			taken[nextPointIndex] = true;
+			minDistSquared[nextPointIndex] = 0;
+			nearest[nextPointIndex] = center;
+			
+			// update all points against the new center in parallel
+			SeedingUpdateTask.updateAll(pointList, nextPointIndex, center, taken, minDistSquared, nearest,
+					sampler, chunkSize);
+			if (resultSet.size() == m) {
+				break;
+			}
+			
+			// D^2 sampling of the next center
+			nextPointIndex = sampler.search(random.nextDouble() * sampler.total());
+			if (nextPointIndex < 0 || taken[nextPointIndex]) {
+				// distances are extremely small, just pick the last available point
+				nextPointIndex = numPoints - 1;
+				while (taken[nextPointIndex]) {
+					nextPointIndex--;
+				}
+			}
+		}
+		assignNearestWeights(pointList, nearest, resultSet);
+		return resultSet;
+	}
+	
+	/**
+	 * set the weight of every center to the total weight of the points nearest to it
+	 * @param points
+	 * @param nearest nearest[i] is the index of the nearest center of point i
+	 * @param centers
+	 */
+	private static void assignNearestWeights(PointBlock points, int[] nearest, PointBlock centers) {
+		final double[] centerWeights = new double[centers.size()];
+		for (int i=0; i<points.size(); i++) {
+			centerWeights[nearest[i]] += points.weight(i);
+		}
+		for (int c=0; c<centers.size(); c++) {
+			centers.setWeight(c, centerWeights[c]);
+		}
+	}
+	
+	/**
+	 * k-means|| seeding (Scalable K-Means++, by Bahmani et al).
+	 * After a first center chosen by weight, every round samples each point
+	 * independently with probability proportional to its weighted cost, so
+	 * about oversampling*m candidates are added per round. Sampling and cost
+	 * updates run on the common fork-join pool. The candidates are weighted by
+	 * the total weight of their closest points and reduced to m centers by
+	 * fastSeeding. Each chunk of points draws from its own generator seeded
+	 * from random, so a fixed seed gives the same centers on any pool size.
+	 * @param points
+	 * @param m
+	 * @param random
+	 * @param rounds number of sampling rounds
+	 * @param oversampling expected number of candidates per round, divided by m
+	 * @return m weighted centers, the weight of a center is the total weight it represents
+	 * @throws NumberIsTooSmallException if there are fewer than m points
+	 */
+	public static PointBlock kMeansParallelSeeding(final PointBlock points, final int m, Random random,
+			int rounds, double oversampling) {
+		final int numPoints = points.size();
+		if (numPoints < m) {
+			throw new NumberIsTooSmallException(numPoints, m, false);
+		}
+		final int d = points.dimension();
+		final double[] coords = points.coords();
+		final double[] weights = points.weights();
+		// fixed chunk size: each chunk has its own generator, so the chunking
+		// must not depend on the number of workers
+		final int chunkSize = KMEANS_PARALLEL_CHUNK_SIZE;
+		final int numChunks = (numPoints + chunkSize - 1) / chunkSize;
+		
+		final PointBlock candidates = new PointBlock(d, (int) (rounds * oversampling * m) + 1);
+		// choose first candidate by weight
+		SumTree sampler = new SumTree(numPoints);
+		sampler.build(weights);
+		candidates.add(points, sampler.sample(0, numPoints, random.nextDouble()));
+		
+		// weighted squared distance of each point to its nearest candidate
+		final double[] minDistSquared = new double[numPoints];
+		final int[] nearest = new int[numPoints];
+		Arrays.fill(minDistSquared, Double.MAX_VALUE);
+		updateNearest(points, candidates, 0, 1, minDistSquared, nearest, chunkSize, numChunks);
+		
+		final double expected = oversampling * m;
+		for (int round=0; round<rounds; round++) {
+			double cost = 0;
+			for (int i=0; i<numPoints; i++) {
+				cost += minDistSquared[i];
+			}
+			if (!(cost > 0)) {
+				// every point is a candidate already
+				break;
+			}
+			final double scale = expected / cost;
+			final long roundSeed = random.nextLong();
+			final int[][] picks = new int[numChunks][];
+			ParallelChunks.run(numChunks, new ParallelChunks.Body() {
+				@Override
+				public void run(int chunk) {
+					SplittableRandom chunkRandom = new SplittableRandom(roundSeed + chunk);
+					int from = chunk * chunkSize;
+					int to = Math.min(from + chunkSize, numPoints);
+					int[] chosen = new int[16];
+					int count = 0;
+					for (int i=from; i<to; i++) {
+						if (chunkRandom.nextDouble() < minDistSquared[i] * scale) {
+							if (count == chosen.length) {
+								chosen = Arrays.copyOf(chosen, 2 * count);
+							}
+							chosen[count++] = i;
+						}
+					}
+					picks[chunk] = Arrays.copyOf(chosen, count);
+				}
+			});
+			
+			// add the new candidates in chunk order
+			int before = candidates.size();
+			for (int[] chosen : picks) {
+				for (int i : chosen) {
+					candidates.add(points, i);
+				}
+			}
+			updateNearest(points, candidates, before, candidates.size(), minDistSquared, nearest,
+					chunkSize, numChunks);
+		}
+		
+		if (candidates.size() < m) {
+			// not enough candidates (e.g. many duplicate points)
+			return fastSeeding(points, m, random, DEFAULT_PARALLEL_THRESHOLD);
+		}
+		
+		// weight each candidate by the points closest to it
+		assignNearestWeights(points, nearest, candidates);
+		if (candidates.size() == m) {
+			return candidates;
+		}
+		return fastSeeding(candidates, m, random, DEFAULT_PARALLEL_THRESHOLD);
+	}
+	
+	/**
+	 * lower minDistSquared of every point to candidates [from, to),
+	 * remembering the index of the nearest candidate
+	 */
+	private static void updateNearest(final PointBlock points, final PointBlock candidates, final int from,
+			final int to, final double[] minDistSquared, final int[] nearest, final int chunkSize, int numChunks) {
+		if (from >= to) {
+			return;
+		}
+		final int d = points.dimension();
+		final double[] coords = points.coords();
+		final double[] weights = points.weights();
+		final double[] candidateCoords = candidates.coords();
+		ParallelChunks.run(numChunks, new ParallelChunks.Body() {
+			@Override
+			public void run(int chunk) {
+				int end = Math.min((chunk + 1) * chunkSize, points.size());
+				for (int i=chunk*chunkSize; i<end; i++) {
+					for (int c=from; c<to; c++) {
+						double d2 = Distances.squared(coords, i * d, candidateCoords, c * d, d) * weights[i];
+						if (d2 < minDistSquared[i]) {
+							minDistSquared[i] = d2;
+							nearest[i] = c;
+						}
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * D^2 sampling acceleration by coreset tree
+	 * Note our input points are weighted
+	 * (StreamKM++: A Clustering Algorithm for Data Streams, by Ackermann et al)
+	 * @param points
+	 * @param m
+	 * @return
+	 * @throws IOException 
+	 */
+	public static List<Point> fastSeeding(final List<Point> points, int m) {
+		return fastSeeding(PointBlock.fromPoints(points), m).toPoints();
+	}
+	
+	/**
+	 * D^2 sampling acceleration by coreset tree over a block of weighted points
+	 * (StreamKM++: A Clustering Algorithm for Data Streams, by Ackermann et al)
+	 * @param points
+	 * @param m
+	 * @return m weighted centers, the weight of each center is the sum of
+	 *         weights of the points in its leaf node
+	 */
+	public static PointBlock fastSeeding(final PointBlock points, int m) {
+		return fastSeeding(points, m, new Random(), DEFAULT_PARALLEL_THRESHOLD);
+	}
+	
+	/**
+	 * D^2 sampling acceleration by coreset tree over a block of weighted points
+	 * (StreamKM++: A Clustering Algorithm for Data Streams, by Ackermann et al).
+	 * The costs of a node with more than parallelThreshold members to a new
+	 * center are computed on the common fork-join pool.
+	 * @param points
+	 * @param m
+	 * @param randSeed random generator for sampling
+	 * @param parallelThreshold Integer.MAX_VALUE to always run on the calling thread
+	 * @return m weighted centers, the weight of each center is the sum of
+	 *         weights of the points in its leaf node
+	 */
+	public static PointBlock fastSeeding(final PointBlock points, int m, Random randSeed, int parallelThreshold) {
+		if (points.size() < m) {
+			throw new NumberIsTooSmallException(points.size(), m, false);
+		}
+		
+		final int numPoints = points.size();
+		final double[] pointWeights = points.weights();
+		
+		// choose first center uniformly at random from points
+        // Note: as each input point is weighted, we sample by each point's weight,
+		// so higher weight means higher probability to be selected
+		SumTree sampler = new SumTree(numPoints);
+		sampler.build(pointWeights);
+		int firstCenterIndex = sampler.sample(0, numPoints, randSeed.nextDouble());
+		
+		// The coreset tree is kept in two arrays: pointIndex is a permutation of
+		// the non-center points and cost[i] is the weighted-cost of point
+		// pointIndex[i] to the center of its leaf. Every tree node owns the
+		// contiguous range [start, end) of both arrays and splitting a leaf
+		// partitions its range in place.
+		final int[] pointIndex = new int[numPoints - 1];
+		final double[] cost = new double[numPoints - 1];
+		
+		int pos = 0;
+		for (int i=0; i<numPoints; i++) {
+			if (i != firstCenterIndex) {
+				pointIndex[pos++] = i;
+			}
+		}
+		// weighted-cost (D^2) to first center
+		computeCost(points, firstCenterIndex, pointIndex, cost, 0, numPoints - 1, parallelThreshold);
+		double sumOfCost = 0;
+		for (int i=0; i<numPoints - 1; i++) {
+			sumOfCost += cost[i];
+		}
+		// from now on the sum tree is over cost (the last slot is unused)
+		sampler.build(cost);
+		
+		// cost to a new center of the members of a large leaf, computed 
+		// in parallel before the (sequential) partition
+		double[] newCost = null;
+		
+		// create root node with first center
+		TreeNode root = new TreeNode(firstCenterIndex, 0, numPoints - 1);
+		root.weight = sumOfCost;
+
+		// generate 2 to m centers
+		int numOfCenters = 1;
+		while (numOfCenters < m) {
+			// find leaf node
+			TreeNode node = root;
+			while (node.left != null && node.right != null) {
+				// first check if left child or right child has a 
+				// "free" member point (not assigned as center),
+				// if not, we should choose the other child anyway
+				if (node.left.numMembers == 0) {
+					node = node.right;
+					continue;
+				}
+				if (node.right.numMembers == 0) {
+					node = node.left;
+					continue;
+				}
+				
+				double leftNodeWeight = node.left.weight;
+				double rightNodeWeight = node.right.weight;
+				// sample by weights of two child nodes
+				if (randSeed.nextDouble() < (leftNodeWeight / (leftNodeWeight + rightNodeWeight))) {
+					node = node.left;
+				}
+				else {
+					node = node.right;
+				}
+			}
+			
+			// choose one point in the leaf node P_l based on 
+			// the D^2 sampling to the center of P_l, the weighted-cost
+			// to the center is already computed
+			final int start = node.start;
+			final int end = node.end;
+			int nextCenterPos = sampler.sample(start, end, randSeed.nextDouble());
+			
+			// move the new center to the end of the range, it is no longer a member
+			final int last = end - 1;
+			swap(pointIndex, cost, nextCenterPos, last);
+			final int nextCenter = pointIndex[last];
+			
+			// partition [start, last) in place: points closer to the previous
+			// center stay in front, points closer to the new center go behind
+			double leftChildWeight = 0;
+			double rightChildWeight = 0;
+			int lo = start;
+			int hi = last;
+			if (last - start > parallelThreshold) {
+				if (newCost == null) {
+					newCost = new double[numPoints - 1];
+				}
+				computeCost(points, nextCenter, pointIndex, newCost, start, last, parallelThreshold);
+				while (lo < hi) {
+					if (cost[lo] < newCost[lo]) {
+						leftChildWeight += cost[lo];
+						lo++;
+					}
+					else {
+						cost[lo] = newCost[lo];
+						rightChildWeight += newCost[lo];
+						hi--;
+						swap(pointIndex, cost, lo, hi);
+						newCost[lo] = newCost[hi];
+					}
+				}
+			}
+			else {
+				while (lo < hi) {
+					int p = pointIndex[lo];
+					// compute weighted-cost of point p to the new center
+					double cost2Center = points.squaredDistance(p, points, nextCenter) * pointWeights[p];
+					if (cost[lo] < cost2Center) {
+						leftChildWeight += cost[lo];
+						lo++;
+					}
+					else {
+						cost[lo] = cost2Center;
+						rightChildWeight += cost2Center;
+						hi--;
+						swap(pointIndex, cost, lo, hi);
+					}
+				}
+			}
+			
+			// the new center has no cost, the members have new costs
+			cost[last] = 0;
+			sampler.setRange(cost, start, end);
+			
+			// generate left child TreeNode with previous leaf center (see Fig 2. in the paper)
+			TreeNode leftChildNode = new TreeNode(node.center, start, lo);
+			leftChildNode.weight = leftChildWeight;
+			// generate right child TreeNode with new center
+			TreeNode rightChildNode = new TreeNode(nextCenter, lo, last);
+			rightChildNode.weight = rightChildWeight;
+			
+			// link tree nodes
+			node.left = leftChildNode;
+			node.right = rightChildNode;
+			leftChildNode.parent = node;
+			rightChildNode.parent = node;
+			
+			// propagate update of weight and numMembers attribute upwards to node root
+			while (node != null) {
+				// weight attribute of an inner node is defined as 
+				// the sum of the weights of its child nodes
+				node.weight = node.left.weight + node.right.weight;
+				node.numMembers--;
+				node = node.parent;
+			}
+			
+			// new center found (Don't forget)
+			numOfCenters++;
+		}
+		
+		// all leaf nodes in the tree are centers
+		final PointBlock resultSet = new PointBlock(points.dimension(), m);
+		dfs(points, pointIndex, root, resultSet);
+		return resultSet;
+	}
+
+	/**
+	 * compute the weighted-cost of points pointIndex[from, to) to the center,
+	 * in parallel if the range is longer than parallelThreshold
+	 * @param points
+	 * @param center
+	 * @param pointIndex
+	 * @param cost
+	 * @param from
+	 * @param to
+	 * @param parallelThreshold
+	 */
+	private static void computeCost(PointBlock points, int center, int[] pointIndex, double[] cost,
+			int from, int to, int parallelThreshold) {
+		if (to - from > parallelThreshold && ForkJoinPool.getCommonPoolParallelism() > 1) {
+			WeightedCostTask.computeAll(points, center, pointIndex, cost, from, to);
+		}
+		else {
+			WeightedCostTask.computeRange(points, center, pointIndex, cost, from, to);
+		}
+	}
+	
+	/**
+	 * swap entries i and j of the coreset tree arrays
+	 * @param pointIndex
+	 * @param cost
+	 * @param i
+	 * @param j
+	 */
+	private static void swap(int[] pointIndex, double[] cost, int i, int j) {
+		int tempIndex = pointIndex[i];
+		pointIndex[i] = pointIndex[j];
+		pointIndex[j] = tempIndex;
+		double tempCost = cost[i];
+		cost[i] = cost[j];
+		cost[j] = tempCost;
+	}
+	
+	/**
+	 * retrieve all leaf nodes centers
+	 * Note: the center coordinates are copied into resultSet
+	 * @param points
+	 * @param pointIndex
+	 * @param node
+	 * @param resultSet
+	 */
+	private static void dfs(PointBlock points, int[] pointIndex, TreeNode node, final PointBlock resultSet) {
+		// leaf node
+		if (node.left==null && node.right==null) {
+			double weight = points.weight(node.center);
+			for (int i=node.start; i<node.end; i++) {
+				weight += points.weight(pointIndex[i]);
+			}
+			resultSet.add(points.coords(), node.center * points.dimension(), points.dimension(), weight);
+			return;
+		}
+		
+		// inner node
+		dfs(points, pointIndex, node.left, resultSet);
+		dfs(points, pointIndex, node.right, resultSet);
+	}
+	
+}
@@ -1,183 +1,669 @@
-
-package edu.iastate.datasketches.clustering;
-
-import java.util.ArrayList;
-import java.util.List;
-
-import org.apache.commons.math3.util.Pair;
-
-
-public class KMeansSketch {
-	
-	// number of cluster centers
-	private final int k;
-	
-	// bucket size
-	private final int m;
-
-	// merge threshold
-	private final int r;
-	
-	// number of iterations for each trial
-	private final int iters;
-		
-	// number of trials for computing cluster centers
-	private final int trials;
-
-	// coreset tree: each level of the tree is a list of buckets, 
-	// each bucket in the coreset tree is with size m
-	public List<List<Bucket>> coresetTree;
-
-	// initial bucket: size can be 0 to m-1 (both inclusive)
-	public Bucket bucket_0;
-		
-	public KMeansSketch(int k, int bucketSize, int mergeThreshold, int iters, int trials) {
-		this.k = k;
-		this.m = bucketSize;
-		this.r = mergeThreshold;
-		this.iters = iters;
-		this.trials = trials;
-		this.bucket_0 = new Bucket(m);
-		this.coresetTree = new ArrayList<>();
-	}
-	
-	public List<List<Bucket>> getCoresetTree() {
-		return coresetTree;
-	}
-	
-	/**
-	 * update coreset tree upon every new point
-	 * @param p new point
-	 */
-	public void cluster(Point p) {
-		mergeReduce(p);
-	}
-	
-	/**
-	 * Compute k centers from the coreset tree
-	 * @return list of k points as cluster centers
-	 */
-	public List<Point> getCenters() {
-		List<Point> coresets = new ArrayList<Point>();
-		for (List<Bucket> level : coresetTree) {
-			for (Bucket b : level) {
-				coresets.addAll(b.coreset);
-			}
-		}
-		
-		// add coreset in bucket 0
-		coresets.addAll(bucket_0.coreset);
-		
-		// run kmeans++ multiple times to get the best k centers
-		return KMeansPlusPlus.multiKMeansPlusPlus(coresets, k, iters, trials);
-	}
-	
-	/**
-	 * Runs the merge-reduce clustering algorithm. 
-	 * It is like incrementing "one" to a number.
-	 * @param p
-	 */
-	public void mergeReduce(Point p) {
-		// add new point to the bucket 0
-		bucket_0.addPoint(p);
-		// when bucket 0 is full, update the coreset tree
-		if (bucket_0.coresetSize() == m) {
-			// carry digit
-			Bucket bucketCarry = bucket_0;
-			// empty bucket 0
-			bucket_0 = new Bucket(m);
-			
-			for (int i=0; i<coresetTree.size(); i++) {
-				List<Bucket> currentLevel = coresetTree.get(i);
-				// number of buckets at level i is less than (r-1),
-				// then no need to increment additionally
-				if (currentLevel.size() < (r - 1)) {
-					currentLevel.add(bucketCarry);
-					return;
-				}
-				bucketCarry = bucketCarry.mergeBuckets(currentLevel);
-				// empty this level (list of buckets)
-				currentLevel.clear();
-			}
-			List<Bucket> nextLevel = new ArrayList<>();
-			nextLevel.add(bucketCarry);
-			coresetTree.add(nextLevel);
-		}
-	}
-	
-	/**
-	 * Merge the coreset tree of two kmeans-sketches.
-	 * As each coreset tree can be represented by a r-nary number, 
-	 * it is like adding up two numbers, digit by digit. 
-	 * @param anotherSketch
-	 * @return a new kmeans-sketch with the merged coreset tree
-	 */
-	public KMeansSketch merge(KMeansSketch anotherSketch) {
-		int i = 0;
-		int j = 0;
-		
-		KMeansSketch mergedSketch = new KMeansSketch(k, m, r, iters, trials);
-		
-		// merge two bucket_0's coresets
-		Pair<Bucket, Bucket> pairBuckets = bucket_0.mergeBucket0(anotherSketch.bucket_0);
-		
-		// add bucket_0 to the mergedSketch
-		mergedSketch.bucket_0 = pairBuckets.getFirst();
-		Bucket bucketCarry = pairBuckets.getSecond();
-		
-		List<List<Bucket>> anotherCoresetTree = anotherSketch.getCoresetTree();
-		//  merge two coreset trees
-		while (i < coresetTree.size() || j < anotherCoresetTree.size() || bucketCarry != null) {
-			List<Bucket> unionSet = new ArrayList<Bucket>();
-			if (i < coresetTree.size()) {
-				unionSet.addAll(coresetTree.get(i));
-				i++;
-			}
-			if (j < anotherCoresetTree.size()) {
-				unionSet.addAll(anotherCoresetTree.get(j));
-				j++;
-			}
-			if (bucketCarry != null) {
-				unionSet.add(bucketCarry);
-				bucketCarry = null;
-			}
-			
-			// generate buckets at current level and bucketCarry
-			List<Bucket> remainSet = new ArrayList<>();
-			List<Bucket> carrySet = new ArrayList<>();
-			if (unionSet.size() < r) {
-				remainSet = unionSet;
-			}
-			else {
-				for (int l=0; l<unionSet.size(); l++) {
-					if (l < r) {
-						carrySet.add(unionSet.get(l));
-					}
-					else {
-						remainSet.add(unionSet.get(l));
-					}
-				}
-			}
-			
-			// deep copy remainSet
-			List<Bucket> currentLevel = new ArrayList<>();
-			for (Bucket bRemain : remainSet) {
-				Bucket b = new Bucket(m);
-				for (Point p : bRemain.coreset) {
-					b.addPoint(new Point(p));
-				}
-				currentLevel.add(b);
-			}
-			mergedSketch.coresetTree.add(currentLevel);
-			
-			// process carrySet
-			if (!carrySet.isEmpty()) {
-				bucketCarry = new Bucket(m);
-				bucketCarry = bucketCarry.mergeBuckets(carrySet);
-			}
-		}
-		
-		return mergedSketch;
-	}
-	
-}
+
+package edu.iastate.datasketches.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NoDataException;
+import org.apache.commons.math3.exception.NumberIsTooSmallException;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchesStateException;
+
+
+public class KMeansSketch {
+	
+	// number of cluster centers
+	private final int k;
+	
+	// bucket size
+	private final int m;
+
+	// merge threshold
+	private final int r;
+	
+	// number of iterations for each trial
+	private final int iters;
+		
+	// number of trials for computing cluster centers
+	private final int trials;
+	
+	// how buckets are reduced and final centers are chosen
+	private final SeedingStrategy seeding;
+
+	// initial bucket: size can be 0 to m-1 (both inclusive),
+	// only touched by the ingesting thread, readers go through state
+	private Bucket bucket_0;
+	
+	// current view of the sketch, replaced (never modified) by writers
+	private volatile State state;
+	
+	// serializes the writers of state: the ingesting thread and the background merger
+	private final Object treeLock = new Object();
+	
+	// background merger thread, null unless async merge is enabled
+	private ExecutorService merger;
+	
+	// bounds the number of full buckets waiting for the merger
+	private Semaphore pendingPermits;
+	
+	// first failure of the background merger
+	private volatile RuntimeException mergeFailure;
+		
+	public KMeansSketch(int k, int bucketSize, int mergeThreshold, int iters, int trials) {
+		this(k, bucketSize, mergeThreshold, iters, trials, SeedingStrategy.FAST_SEEDING);
+	}
+	
+	public KMeansSketch(int k, int bucketSize, int mergeThreshold, int iters, int trials,
+			SeedingStrategy seeding) {
+		this.k = k;
+		this.m = bucketSize;
+		this.r = mergeThreshold;
+		this.iters = iters;
+		this.trials = trials;
+		this.seeding = seeding;
+		this.bucket_0 = new Bucket(m);
+		this.state = new State(Collections.<List<Bucket>>emptyList(), Collections.<Bucket>emptyList(), bucket_0);
+	}
+	
+	public int getK() {
+		return k;
+	}
+	
+	public int getBucketSize() {
+		return m;
+	}
+	
+	public int getMergeThreshold() {
+		return r;
+	}
+	
+	public int getIterations() {
+		return iters;
+	}
+	
+	public int getTrials() {
+		return trials;
+	}
+	
+	public SeedingStrategy getSeedingStrategy() {
+		return seeding;
+	}
+	
+	/**
+	 * Immutable view of the sketch. Levels of the coreset tree and the buckets
+	 * in them are never modified once published (copy-on-write), a carry
+	 * builds new level lists and shares the unchanged ones. Bucket 0 only
+	 * grows and is read up to its published size, see {@link Bucket#snapshot()}.
+	 * Readers take the current state once and never block the writers.
+	 */
+	static final class State {
+		
+		// coreset tree: each level of the tree is a list of buckets, 
+		// each bucket in the coreset tree is with size m
+		final List<List<Bucket>> coresetTree;
+		
+		// full buckets handed to the merger but not yet in the coreset tree
+		final List<Bucket> pendingBuckets;
+		
+		final Bucket bucket_0;
+		
+		State(List<List<Bucket>> coresetTree, List<Bucket> pendingBuckets, Bucket bucket_0) {
+			this.coresetTree = coresetTree;
+			this.pendingBuckets = pendingBuckets;
+			this.bucket_0 = bucket_0;
+		}
+	}
+	
+	/**
+	 * get the current coreset tree, an unmodifiable snapshot that
+	 * later updates of the sketch do not change
+	 * @return
+	 */
+	public List<List<Bucket>> getCoresetTree() {
+		return state.coresetTree;
+	}
+	
+	/**
+	 * update coreset tree upon every new point
+	 * @param p new point
+	 */
+	public void cluster(Point p) {
+		mergeReduce(p);
+	}
+	
+	/**
+	 * update coreset tree with a batch of points stored row-major,
+	 * bucket 0 is filled in bulk and merged every time it is full
+	 * @param rows point j is rows[j*dimension, (j+1)*dimension)
+	 * @param dimension
+	 * @param weights weight of each point, null for weight 1
+	 */
+	public void clusterBatch(double[] rows, int dimension, double[] weights) {
+		if (dimension < 1) {
+			throw new NumberIsTooSmallException(dimension, 1, true);
+		}
+		if (rows.length % dimension != 0) {
+			throw new DimensionMismatchException(rows.length % dimension, dimension);
+		}
+		int numPoints = rows.length / dimension;
+		if (weights != null && weights.length != numPoints) {
+			throw new DimensionMismatchException(weights.length, numPoints);
+		}
+		int j = 0;
+		while (j < numPoints) {
+			int count = Math.min(m - bucket_0.coresetSize(), numPoints - j);
+			bucket_0.coreset.addRows(rows, j * dimension, count, dimension, weights, j);
+			j += count;
+			if (bucket_0.coresetSize() == m) {
+				bucket0Full();
+			}
+		}
+		bucket_0.publish();
+	}
+	
+	/**
+	 * update coreset tree with a batch of weighted points
+	 * @param batch
+	 */
+	public void clusterBatch(PointBlock batch) {
+		int d = batch.dimension();
+		int j = 0;
+		while (j < batch.size()) {
+			int count = Math.min(m - bucket_0.coresetSize(), batch.size() - j);
+			bucket_0.coreset.addRows(batch.coords(), j * d, count, d, batch.weights(), j);
+			j += count;
+			if (bucket_0.coresetSize() == m) {
+				bucket0Full();
+			}
+		}
+		bucket_0.publish();
+	}
+	
+	/**
+	 * update coreset tree with a batch of points
+	 * @param rows rows[j] is the position of point j
+	 * @param weights weight of each point, null for weight 1
+	 */
+	public void clusterBatch(double[][] rows, double[] weights) {
+		if (weights != null && weights.length != rows.length) {
+			throw new DimensionMismatchException(weights.length, rows.length);
+		}
+		for (int j=0; j<rows.length; j++) {
+			bucket_0.coreset.add(rows[j], weights == null ? 1.0 : weights[j]);
+			if (bucket_0.coresetSize() == m) {
+				bucket0Full();
+			}
+		}
+		bucket_0.publish();
+	}
+	
+	/**
+	 * Hand full buckets to a background thread that merges them into the
+	 * coreset tree, so cluster(Point) only pays for the merge-reduce cascade
+	 * when more than maxPendingBuckets full buckets are waiting (backpressure).
+	 * getCenters and merge include the waiting buckets. The sketch itself is
+	 * still meant to be fed by one thread.
+	 * @param maxPendingBuckets
+	 */
+	public void enableAsyncMerge(int maxPendingBuckets) {
+		if (merger != null) {
+			return;
+		}
+		pendingPermits = new Semaphore(Math.max(maxPendingBuckets, 1));
+		merger = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "kmeans-sketch-merger");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * wait for the waiting buckets to be merged and stop the background thread.
+	 * The sketch is back to synchronous merging even if a background merge
+	 * failed: that failure is thrown here and the buckets it could not merge
+	 * stay pending.
+	 */
+	public void disableAsyncMerge() {
+		if (merger == null) {
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			merger.shutdown();
+			merger = null;
+			pendingPermits = null;
+			mergeFailure = null;
+		}
+	}
+	
+	/**
+	 * wait until every full bucket handed to the background merger is in the
+	 * coreset tree, no-op without async merge
+	 */
+	public void flush() {
+		if (merger != null) {
+			try {
+				merger.submit(new Runnable() {
+					@Override
+					public void run() {
+					}
+				}).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		checkMergeFailure();
+	}
+	
+	/**
+	 * Compute k centers from the coreset tree.
+	 * Works on a snapshot, so it can be called from any thread while
+	 * another one keeps feeding the sketch, without blocking it.
+	 * @return list of k points as cluster centers
+	 */
+	public List<Point> getCenters() {
+		State current = state;
+		Bucket b0 = current.bucket_0.snapshot();
+		int unionSize = b0.coresetSize();
+		for (List<Bucket> level : current.coresetTree) {
+			for (Bucket b : level) {
+				unionSize += b.coresetSize();
+			}
+		}
+		for (Bucket b : current.pendingBuckets) {
+			unionSize += b.coresetSize();
+		}
+		
+		PointBlock coresets = new PointBlock(unionSize);
+		for (List<Bucket> level : current.coresetTree) {
+			for (Bucket b : level) {
+				coresets.addAll(b.coreset);
+			}
+		}
+		for (Bucket b : current.pendingBuckets) {
+			coresets.addAll(b.coreset);
+		}
+		
+		// add coreset in bucket 0
+		coresets.addAll(b0.coreset);
+		
+		// run kmeans++ multiple times to get the best k centers
+		return KMeansPlusPlus.multiKMeansPlusPlus(coresets, k, iters, trials, seeding).toPoints();
+	}
+	
+	/**
+	 * Runs the merge-reduce clustering algorithm. 
+	 * It is like incrementing "one" to a number.
+	 * @param p
+	 */
+	public void mergeReduce(Point p) {
+		// add new point to the bucket 0
+		bucket_0.addPoint(p);
+		bucket_0.publish();
+		// when bucket 0 is full, update the coreset tree
+		if (bucket_0.coresetSize() == m) {
+			bucket0Full();
+		}
+	}
+	
+	/**
+	 * move the full bucket 0 into the coreset tree
+	 */
+	private void bucket0Full() {
+		// carry digit
+		Bucket bucketCarry = bucket_0;
+		bucketCarry.publish();
+		// empty bucket 0
+		bucket_0 = new Bucket(m);
+		
+		if (merger == null) {
+			// readers keep seeing the full bucket 0 until the new tree is published
+			List<List<Bucket>> coresetTree = carry(state.coresetTree, bucketCarry);
+			synchronized (treeLock) {
+				state = new State(coresetTree, state.pendingBuckets, bucket_0);
+			}
+		}
+		else {
+			carryAsync(bucketCarry);
+		}
+	}
+	
+	/**
+	 * add a full bucket to level 0 of a coreset tree and propagate carries,
+	 * the given tree is not modified
+	 * @param coresetTree
+	 * @param bucketCarry
+	 * @return the new coreset tree, sharing the levels that did not change
+	 */
+	private List<List<Bucket>> carry(List<List<Bucket>> coresetTree, Bucket bucketCarry) {
+		List<List<Bucket>> newTree = new ArrayList<>(coresetTree.size() + 1);
+		int i = 0;
+		while (i < coresetTree.size() && bucketCarry != null) {
+			List<Bucket> currentLevel = coresetTree.get(i);
+			// number of buckets at level i is less than (r-1),
+			// then no need to increment additionally
+			if (currentLevel.size() < (r - 1)) {
+				List<Bucket> level = new ArrayList<>(currentLevel);
+				level.add(bucketCarry);
+				newTree.add(Collections.unmodifiableList(level));
+				bucketCarry = null;
+			}
+			else {
+				bucketCarry = bucketCarry.mergeBuckets(currentLevel, seeding);
+				// empty this level (list of buckets)
+				newTree.add(Collections.<Bucket>emptyList());
+			}
+			i++;
+		}
+		newTree.addAll(coresetTree.subList(i, coresetTree.size()));
+		if (bucketCarry != null) {
+			newTree.add(Collections.singletonList(bucketCarry));
+		}
+		return Collections.unmodifiableList(newTree);
+	}
+	
+	/**
+	 * hand a full bucket to the background merger, blocks while
+	 * maxPendingBuckets buckets are already waiting
+	 * @param bucketCarry
+	 */
+	private void carryAsync(final Bucket bucketCarry) {
+		checkMergeFailure();
+		pendingPermits.acquireUninterruptibly();
+		synchronized (treeLock) {
+			List<Bucket> pendingBuckets = new ArrayList<>(state.pendingBuckets);
+			pendingBuckets.add(bucketCarry);
+			state = new State(state.coresetTree, Collections.unmodifiableList(pendingBuckets), bucket_0);
+		}
+		final Semaphore permits = pendingPermits;
+		merger.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					// only the merger changes the tree while async merge is on,
+					// so the reduction can run outside the lock
+					List<List<Bucket>> coresetTree = carry(state.coresetTree, bucketCarry);
+					synchronized (treeLock) {
+						List<Bucket> pendingBuckets = new ArrayList<>(state.pendingBuckets);
+						pendingBuckets.remove(bucketCarry);
+						state = new State(coresetTree, Collections.unmodifiableList(pendingBuckets), state.bucket_0);
+					}
+				} catch (RuntimeException e) {
+					if (mergeFailure == null) {
+						mergeFailure = e;
+					}
+				} finally {
+					permits.release();
+				}
+			}
+		});
+	}
+	
+	private void checkMergeFailure() {
+		if (mergeFailure != null) {
+			throw new IllegalStateException("background merge failed", mergeFailure);
+		}
+	}
+	
+	/**
+	 * Merge the coreset tree of two kmeans-sketches.
+	 * As each coreset tree can be represented by a r-nary number, 
+	 * it is like adding up two numbers, digit by digit. 
+	 * Both sketches are read through snapshots, so either may still be fed
+	 * by another thread.
+	 * @see #mergeAll(Collection)
+	 * @param anotherSketch
+	 * @return a new kmeans-sketch with the merged coreset tree
+	 */
+	public KMeansSketch merge(KMeansSketch anotherSketch) {
+		return mergeAll(Arrays.asList(this, anotherSketch));
+	}
+	
+	/**
+	 * Merge the coreset trees of any number of kmeans-sketches at once,
+	 * adding up all their r-nary numbers digit by digit. At each level every
+	 * r buckets of the union are reduced to one carry bucket for the next
+	 * level, the reductions of a level run in parallel. Buckets are immutable
+	 * and shared with the inputs, bucket 0s are pooled and cut into full
+	 * buckets. Full buckets still waiting for a background merger are added
+	 * at level 0. All sketches are read through snapshots.
+	 * @param sketches sketches with the same bucket size and merge threshold,
+	 * the parameters of the first one are used for the result
+	 * @return a new kmeans-sketch with the merged coreset tree
+	 */
+	public static KMeansSketch mergeAll(Collection<KMeansSketch> sketches) {
+		if (sketches.isEmpty()) {
+			throw new NoDataException();
+		}
+		KMeansSketch first = sketches.iterator().next();
+		List<State> states = new ArrayList<>(sketches.size());
+		for (KMeansSketch sketch : sketches) {
+			if (sketch.m != first.m) {
+				throw new DimensionMismatchException(sketch.m, first.m);
+			}
+			if (sketch.r != first.r) {
+				throw new DimensionMismatchException(sketch.r, first.r);
+			}
+			states.add(sketch.state);
+		}
+		return mergeStates(first.k, first.m, first.r, first.iters, first.trials, first.seeding, states);
+	}
+	
+	/**
+	 * merge snapshots of sketches with the same bucket size and merge threshold,
+	 * see {@link #mergeAll(Collection)}. Each level of a snapshot is read once.
+	 * @return a new kmeans-sketch with the given parameters and the merged coreset tree
+	 */
+	static KMeansSketch mergeStates(int k, final int m, final int r, int iters, int trials,
+			final SeedingStrategy seeding, List<State> states) {
+		int height = 0;
+		int bucket0Size = 0;
+		List<Bucket> bucket0s = new ArrayList<>(states.size());
+		for (State current : states) {
+			height = Math.max(height, current.coresetTree.size());
+			Bucket b0 = current.bucket_0.snapshot();
+			bucket0s.add(b0);
+			bucket0Size += b0.coresetSize();
+		}
+		
+		KMeansSketch mergedSketch = new KMeansSketch(k, m, r, iters, trials, seeding);
+		
+		// union of all bucket_0's coresets: full buckets are carried
+		// into level 0, the rest becomes the new bucket_0
+		PointBlock union = new PointBlock(bucket0Size);
+		for (Bucket b0 : bucket0s) {
+			union.addAll(b0.coreset);
+		}
+		List<Bucket> carrySet = new ArrayList<>();
+		int full = bucket0Size - bucket0Size % m;
+		for (int from=0; from<full; from+=m) {
+			Bucket bucketCarry = new Bucket(m);
+			bucketCarry.coreset.addRange(union, from, from + m);
+			carrySet.add(bucketCarry);
+		}
+		mergedSketch.bucket_0.coreset.addRange(union, full, bucket0Size);
+		mergedSketch.bucket_0.publish();
+		for (State current : states) {
+			carrySet.addAll(current.pendingBuckets);
+		}
+		
+		List<List<Bucket>> coresetTree = new ArrayList<>();
+		for (int level=0; level<height || !carrySet.isEmpty(); level++) {
+			final List<Bucket> unionSet = new ArrayList<>(carrySet);
+			for (State current : states) {
+				if (level < current.coresetTree.size()) {
+					unionSet.addAll(current.coresetTree.get(level));
+				}
+			}
+			
+			// every r buckets at current level become one bucketCarry,
+			// the rest stay at this level
+			final int numCarries = unionSet.size() / r;
+			coresetTree.add(Collections.unmodifiableList(
+					new ArrayList<>(unionSet.subList(numCarries * r, unionSet.size()))));
+			
+			// the reductions of a level are independent
+			final Bucket[] carries = new Bucket[numCarries];
+			ParallelChunks.run(numCarries, new ParallelChunks.Body() {
+				@Override
+				public void run(int l) {
+					carries[l] = new Bucket(m).mergeBuckets(unionSet.subList(l * r, (l + 1) * r), seeding);
+				}
+			});
+			carrySet = Arrays.asList(carries);
+		}
+		
+		mergedSketch.state = new State(Collections.unmodifiableList(coresetTree),
+				Collections.<Bucket>emptyList(), mergedSketch.bucket_0);
+		return mergedSketch;
+	}
+	
+	/**
+	 * Serialize a snapshot of the sketch into the compact format described
+	 * in {@link PreambleUtil}: a preamble with the parameters and the number
+	 * of buckets of each level, followed by the packed coordinates and
+	 * weights of every bucket.
+	 * @return
+	 */
+	public byte[] toByteArray() {
+		State current = state;
+		Bucket b0 = current.bucket_0.snapshot();
+		int dimension = b0.coreset.dimension();
+		int numBuckets = current.pendingBuckets.size();
+		for (List<Bucket> level : current.coresetTree) {
+			numBuckets += level.size();
+			for (Bucket b : level) {
+				dimension = Math.max(dimension, checkFull(b));
+			}
+		}
+		for (Bucket b : current.pendingBuckets) {
+			dimension = Math.max(dimension, checkFull(b));
+		}
+		
+		int numLevels = current.coresetTree.size();
+		long bytes = PreambleUtil.preambleBytes(numLevels) 
+				+ numBuckets * PreambleUtil.bucketBytes(m, dimension)
+				+ PreambleUtil.bucketBytes(b0.coresetSize(), dimension);
+		byte[] out = new byte[PreambleUtil.checkArrayLength(bytes, "Serialized sketch")];
+		WritableMemory mem = WritableMemory.wrap(out);
+		int[] levelCounts = new int[numLevels];
+		for (int i=0; i<numLevels; i++) {
+			levelCounts[i] = current.coresetTree.get(i).size();
+		}
+		PreambleUtil.putPreamble(mem, k, m, r, iters, trials, seeding, dimension, 
+				levelCounts, numLevels, current.pendingBuckets.size(), b0.coresetSize());
+		
+		long offset = PreambleUtil.preambleBytes(numLevels);
+		for (List<Bucket> level : current.coresetTree) {
+			for (Bucket b : level) {
+				offset = PreambleUtil.putBlock(b.coreset, mem, offset);
+			}
+		}
+		for (Bucket b : current.pendingBuckets) {
+			offset = PreambleUtil.putBlock(b.coreset, mem, offset);
+		}
+		PreambleUtil.putBlock(b0.coreset, mem, offset);
+		return out;
+	}
+	
+	/**
+	 * @param b a bucket of the coreset tree
+	 * @return its dimension
+	 */
+	private int checkFull(Bucket b) {
+		if (b.coresetSize() != m) {
+			throw new SketchesStateException("bucket with " + b.coresetSize() + " points in the coreset tree");
+		}
+		return b.coreset.dimension();
+	}
+	
+	/**
+	 * Rebuild a sketch from its serialized form, see {@link #toByteArray()}.
+	 * Pending buckets of a sketch serialized during an async merge are
+	 * carried into the coreset tree.
+	 * @param srcMem
+	 * @return
+	 */
+	public static KMeansSketch heapify(Memory srcMem) {
+		PreambleUtil.checkPreamble(srcMem);
+		SeedingStrategy seeding = SeedingStrategy.values()[srcMem.getByte(PreambleUtil.SEEDING_BYTE)];
+		int m = srcMem.getInt(PreambleUtil.M_INT);
+		int dimension = srcMem.getInt(PreambleUtil.DIMENSION_INT);
+		int numLevels = srcMem.getInt(PreambleUtil.NUM_LEVELS_INT);
+		int numPending = srcMem.getInt(PreambleUtil.NUM_PENDING_INT);
+		int bucket0Size = srcMem.getInt(PreambleUtil.BUCKET0_SIZE_INT);
+		KMeansSketch sketch = new KMeansSketch(srcMem.getInt(PreambleUtil.K_INT), m, 
+				srcMem.getInt(PreambleUtil.R_INT), srcMem.getInt(PreambleUtil.ITERS_INT), 
+				srcMem.getInt(PreambleUtil.TRIALS_INT), seeding);
+		
+		long bucketBytes = PreambleUtil.bucketBytes(m, dimension);
+		long offset = PreambleUtil.preambleBytes(numLevels);
+		List<List<Bucket>> coresetTree = new ArrayList<>(numLevels);
+		for (int i=0; i<numLevels; i++) {
+			int count = srcMem.getInt(PreambleUtil.LEVEL_COUNTS_START + 4L * i);
+			List<Bucket> level = new ArrayList<>(count);
+			for (int b=0; b<count; b++) {
+				level.add(new Bucket(m, PreambleUtil.getBlock(srcMem, offset, m, dimension, m)));
+				offset += bucketBytes;
+			}
+			coresetTree.add(level);
+		}
+		List<Bucket> pendingBuckets = new ArrayList<>(numPending);
+		for (int b=0; b<numPending; b++) {
+			pendingBuckets.add(new Bucket(m, PreambleUtil.getBlock(srcMem, offset, m, dimension, m)));
+			offset += bucketBytes;
+		}
+		
+		// bucket 0 keeps a capacity of m
+		sketch.restore(coresetTree, pendingBuckets, PreambleUtil.getBlock(srcMem, offset, bucket0Size, dimension, m));
+		return sketch;
+	}
+	
+	/**
+	 * replace the content of a new sketch, the pending buckets are carried
+	 * into the coreset tree
+	 * @param coresetTree
+	 * @param pendingBuckets
+	 * @param bucket0 points of bucket 0, with a capacity of m
+	 */
+	void restore(List<List<Bucket>> coresetTree, List<Bucket> pendingBuckets, PointBlock bucket0) {
+		List<List<Bucket>> tree = new ArrayList<>(coresetTree.size());
+		for (List<Bucket> level : coresetTree) {
+			tree.add(Collections.unmodifiableList(level));
+		}
+		tree = Collections.unmodifiableList(tree);
+		for (Bucket b : pendingBuckets) {
+			tree = carry(tree, b);
+		}
+		bucket_0 = new Bucket(m, bucket0);
+		bucket_0.publish();
+		state = new State(tree, Collections.<Bucket>emptyList(), bucket_0);
+	}
+	
+	/**
+	 * get the current snapshot of the sketch
+	 * @return
+	 */
+	State getState() {
+		return state;
+	}
+
+}
@@ -0,0 +1,312 @@
+package edu.iastate.datasketches.clustering;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * Incremental checkpoints of a KMeansSketch in a local directory.
+ * Each non-empty level of the coreset tree is stored in its own file,
+ * which is only rewritten when the level changed since the last checkpoint
+ * (levels are copy-on-write, so an unchanged level is the same list).
+ * A manifest holds the preamble of the serialized format (see
+ * {@link PreambleUtil}), the generation of every level file, the pending
+ * buckets and bucket 0. It is written to a temporary file and atomically
+ * moved, and the directory is forced to the disk before and after the
+ * move, so a crash during a checkpoint leaves the previous one intact.
+ *
+ * <pre>
+ * manifest: preamble | sequence (long) | generation of each level (long) | pending buckets | bucket 0
+ * level-i-generation.bin: the buckets of level i
+ * </pre>
+ *
+ * Checkpoints read a snapshot of the sketch, so they can run on any thread
+ * while the sketch is fed.
+ */
+public class KMeansSketchCheckpointer {
+
+	private static final String MANIFEST = "manifest";
+
+	private static final String MANIFEST_TMP = "manifest.tmp";
+
+	private static final String LEVEL_PREFIX = "level-";
+
+	private final File directory;
+
+	// number of the last checkpoint
+	private long sequence;
+
+	// levels of the last checkpoint and the generations of their files
+	private List<List<Bucket>> writtenLevels = new ArrayList<>();
+
+	private List<Long> writtenGenerations = new ArrayList<>();
+
+	/**
+	 * @param directory created if it does not exist
+	 * @throws IOException
+	 */
+	public KMeansSketchCheckpointer(File directory) throws IOException {
+		this.directory = directory;
+		Files.createDirectories(directory.toPath());
+		if (exists()) {
+			Memory manifest = readManifest();
+			sequence = manifest.getLong(PreambleUtil.preambleBytes(manifest.getInt(PreambleUtil.NUM_LEVELS_INT)));
+		}
+	}
+
+	/**
+	 * @return true if the directory holds a checkpoint
+	 */
+	public boolean exists() {
+		return new File(directory, MANIFEST).isFile();
+	}
+
+	/**
+	 * write a checkpoint of the sketch, only the levels that changed since
+	 * the last checkpoint written by this checkpointer are written again
+	 * @param sketch
+	 * @throws IOException
+	 */
+	public synchronized void checkpoint(KMeansSketch sketch) throws IOException {
+		KMeansSketch.State current = sketch.getState();
+		Bucket b0 = current.bucket_0.snapshot();
+		int m = sketch.getBucketSize();
+		int dimension = b0.coreset.dimension();
+		for (List<Bucket> level : current.coresetTree) {
+			for (Bucket b : level) {
+				dimension = Math.max(dimension, b.coreset.dimension());
+			}
+		}
+		for (Bucket b : current.pendingBuckets) {
+			dimension = Math.max(dimension, b.coreset.dimension());
+		}
+		
+		sequence++;
+		int numLevels = current.coresetTree.size();
+		int[] levelCounts = new int[numLevels];
+		List<Long> generations = new ArrayList<>(numLevels);
+		for (int i=0; i<numLevels; i++) {
+			List<Bucket> level = current.coresetTree.get(i);
+			levelCounts[i] = level.size();
+			long generation = 0;
+			if (!level.isEmpty()) {
+				if (i < writtenLevels.size() && writtenLevels.get(i) == level) {
+					generation = writtenGenerations.get(i);
+				}
+				else {
+					generation = sequence;
+					writeFile(levelFile(i, generation), toBytes(level, m, dimension));
+				}
+			}
+			generations.add(generation);
+		}
+		
+		int numPending = current.pendingBuckets.size();
+		long offset = PreambleUtil.preambleBytes(numLevels);
+		long bytes = offset + 8L * (1 + numLevels) 
+				+ numPending * PreambleUtil.bucketBytes(m, dimension)
+				+ PreambleUtil.bucketBytes(b0.coresetSize(), dimension);
+		byte[] out = new byte[PreambleUtil.checkArrayLength(bytes, "Checkpoint manifest")];
+		WritableMemory mem = WritableMemory.wrap(out);
+		PreambleUtil.putPreamble(mem, sketch.getK(), m, sketch.getMergeThreshold(), sketch.getIterations(),
+				sketch.getTrials(), sketch.getSeedingStrategy(), dimension, levelCounts, numLevels, 
+				numPending, b0.coresetSize());
+		mem.putLong(offset, sequence);
+		offset += 8;
+		for (long generation : generations) {
+			mem.putLong(offset, generation);
+			offset += 8;
+		}
+		for (Bucket b : current.pendingBuckets) {
+			offset = PreambleUtil.putBlock(b.coreset, mem, offset);
+		}
+		PreambleUtil.putBlock(b0.coreset, mem, offset);
+		
+		File tmp = new File(directory, MANIFEST_TMP);
+		writeFile(tmp, out);
+		// the new level files must be in the directory before the manifest refers to them
+		syncDirectory(directory.toPath());
+		Files.move(tmp.toPath(), new File(directory, MANIFEST).toPath(), 
+				StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		// the rename must be durable before the files of the previous checkpoint are deleted
+		syncDirectory(directory.toPath());
+		
+		writtenLevels = new ArrayList<>(current.coresetTree);
+		writtenGenerations = generations;
+		deleteUnreferenced(generations);
+	}
+
+	/**
+	 * restore the sketch of the last checkpoint
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized KMeansSketch restore() throws IOException {
+		Memory manifest = readManifest();
+		int m = manifest.getInt(PreambleUtil.M_INT);
+		int dimension = manifest.getInt(PreambleUtil.DIMENSION_INT);
+		int numLevels = manifest.getInt(PreambleUtil.NUM_LEVELS_INT);
+		int numPending = manifest.getInt(PreambleUtil.NUM_PENDING_INT);
+		int bucket0Size = manifest.getInt(PreambleUtil.BUCKET0_SIZE_INT);
+		long bucketBytes = PreambleUtil.bucketBytes(m, dimension);
+		long offset = PreambleUtil.preambleBytes(numLevels);
+		long bytes = offset + 8L * (1 + numLevels) + numPending * bucketBytes 
+				+ PreambleUtil.bucketBytes(bucket0Size, dimension);
+		if (manifest.getCapacity() < bytes) {
+			throw new SketchesArgumentException("Corrupt checkpoint manifest: " + manifest.getCapacity() + " < " + bytes);
+		}
+		offset += 8;
+		
+		List<List<Bucket>> coresetTree = new ArrayList<>(numLevels);
+		List<Long> generations = new ArrayList<>(numLevels);
+		for (int i=0; i<numLevels; i++) {
+			int count = manifest.getInt(PreambleUtil.LEVEL_COUNTS_START + 4L * i);
+			long generation = manifest.getLong(offset);
+			offset += 8;
+			List<Bucket> level = new ArrayList<>(count);
+			if (count > 0) {
+				File file = levelFile(i, generation);
+				Memory levelMem = Memory.wrap(Files.readAllBytes(file.toPath()));
+				if (levelMem.getCapacity() != count * bucketBytes) {
+					throw new SketchesArgumentException("Corrupt checkpoint file " + file);
+				}
+				for (int b=0; b<count; b++) {
+					level.add(new Bucket(m, PreambleUtil.getBlock(levelMem, b * bucketBytes, m, dimension, m)));
+				}
+			}
+			coresetTree.add(level);
+			generations.add(generation);
+		}
+		List<Bucket> pendingBuckets = new ArrayList<>(numPending);
+		for (int b=0; b<numPending; b++) {
+			pendingBuckets.add(new Bucket(m, PreambleUtil.getBlock(manifest, offset, m, dimension, m)));
+			offset += bucketBytes;
+		}
+		
+		KMeansSketch sketch = new KMeansSketch(manifest.getInt(PreambleUtil.K_INT), m, 
+				manifest.getInt(PreambleUtil.R_INT), manifest.getInt(PreambleUtil.ITERS_INT), 
+				manifest.getInt(PreambleUtil.TRIALS_INT), 
+				SeedingStrategy.values()[manifest.getByte(PreambleUtil.SEEDING_BYTE)]);
+		sketch.restore(coresetTree, pendingBuckets, PreambleUtil.getBlock(manifest, offset, bucket0Size, dimension, m));
+		
+		// the restored levels match their files unless pending buckets were carried
+		if (numPending == 0) {
+			writtenLevels = new ArrayList<>(sketch.getState().coresetTree);
+			writtenGenerations = generations;
+		}
+		return sketch;
+	}
+
+	/**
+	 * checkpoint the sketch periodically on the given executor. An I/O
+	 * error stops the checkpoints and is reported through the returned future.
+	 * @param sketch
+	 * @param executor
+	 * @param period
+	 * @param unit
+	 * @return
+	 */
+	public ScheduledFuture<?> schedule(final KMeansSketch sketch, ScheduledExecutorService executor, 
+			long period, TimeUnit unit) {
+		return executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					checkpoint(sketch);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}, period, period, unit);
+	}
+
+	private Memory readManifest() throws IOException {
+		Memory manifest = Memory.wrap(Files.readAllBytes(new File(directory, MANIFEST).toPath()));
+		PreambleUtil.checkHeader(manifest);
+		int numLevels = manifest.getInt(PreambleUtil.NUM_LEVELS_INT);
+		if (manifest.getCapacity() < PreambleUtil.preambleBytes(numLevels) + 8L * (1 + numLevels)) {
+			throw new SketchesArgumentException("Corrupt checkpoint manifest");
+		}
+		return manifest;
+	}
+
+	private File levelFile(int level, long generation) {
+		return new File(directory, LEVEL_PREFIX + level + "-" + generation + ".bin");
+	}
+
+	/**
+	 * pack the buckets of a level
+	 */
+	private static byte[] toBytes(List<Bucket> level, int m, int dimension) {
+		byte[] out = new byte[PreambleUtil.checkArrayLength(level.size() * PreambleUtil.bucketBytes(m, dimension),
+				"Checkpoint level")];
+		WritableMemory mem = WritableMemory.wrap(out);
+		long offset = 0;
+		for (Bucket b : level) {
+			offset = PreambleUtil.putBlock(b.coreset, mem, offset);
+		}
+		return out;
+	}
+
+	/**
+	 * write a file and force it to the disk
+	 */
+	private static void writeFile(File file, byte[] bytes) throws IOException {
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(bytes);
+			out.getFD().sync();
+		}
+	}
+
+	/**
+	 * force the entries of the directory (created and renamed files) to the disk.
+	 * This is best effort: a directory cannot be opened as a channel on every
+	 * platform (not on Windows), there the file system orders the rename itself.
+	 * @param dir
+	 * @return whether the directory was forced
+	 */
+	static boolean syncDirectory(Path dir) {
+		try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+			channel.force(true);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * delete level files that are not part of the last checkpoint
+	 */
+	private void deleteUnreferenced(List<Long> generations) {
+		Set<String> referenced = new HashSet<>();
+		for (int i=0; i<generations.size(); i++) {
+			referenced.add(levelFile(i, generations.get(i)).getName());
+		}
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.getName().startsWith(LEVEL_PREFIX) && !referenced.contains(file.getName())) {
+				file.delete();
+			}
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.Arrays;
+
+/**
+ * Weighted Lloyd's iterations over a block of weighted points.
+ * The centers are refined in place: each center moves to the weighted
+ * mean of the points assigned to it, and finally gets their total weight.
+ */
+public class Lloyd {
+
+	/**
+	 * assign every point to its nearest center
+	 * @param points
+	 * @param centers
+	 * @param labels labels[i] is set to the index of the nearest center of point i
+	 * @return weighted cost (sum of weight times squared distance to nearest center)
+	 */
+	public static double assign(PointBlock points, PointBlock centers, int[] labels) {
+		final int d = points.dimension();
+		final double[] coords = points.coords();
+		final double[] weights = points.weights();
+		final double[] centerCoords = centers.coords();
+		double cost = 0;
+		for (int i=0; i<points.size(); i++) {
+			int label = Distances.nearest(coords, i * d, centers);
+			labels[i] = label;
+			cost += Distances.squared(coords, i * d, centerCoords, label * d, d) * weights[i];
+		}
+		return cost;
+	}
+
+	/**
+	 * run at most maxIterations Lloyd's iterations, stop early when
+	 * no point changes its nearest center
+	 * @param points
+	 * @param centers initial centers, refined in place
+	 * @param maxIterations
+	 * @return weighted cost of points to the refined centers
+	 */
+	public static double refine(PointBlock points, PointBlock centers, int maxIterations) {
+		final int[] labels = new int[points.size()];
+		final int[] previous = new int[points.size()];
+		double cost = assign(points, centers, labels);
+		for (int iter=0; iter<maxIterations; iter++) {
+			updateCenters(points, centers, labels);
+			System.arraycopy(labels, 0, previous, 0, labels.length);
+			cost = assign(points, centers, labels);
+			if (Arrays.equals(labels, previous)) {
+				break;
+			}
+		}
+		assignWeights(points, centers, labels);
+		return cost;
+	}
+
+	/**
+	 * Same result as {@link #refine(PointBlock, PointBlock, int)}, but each
+	 * point keeps an upper bound on the distance to its center and a lower
+	 * bound on the distance to every other center (Hamerly's algorithm).
+	 * A point is only compared against all centers when the bounds, corrected
+	 * by how far the centers moved, and half the distance from its center to
+	 * the nearest other center can no longer prove its assignment.
+	 * @param points
+	 * @param centers initial centers, refined in place
+	 * @param maxIterations
+	 * @return weighted cost of points to the refined centers
+	 */
+	public static double refineBounded(PointBlock points, PointBlock centers, int maxIterations) {
+		final int n = points.size();
+		final int d = points.dimension();
+		final int k = centers.size();
+		final double[] coords = points.coords();
+		final double[] centerCoords = centers.coords();
+		final int[] labels = new int[n];
+		// distance to the assigned center is at most upper[i]
+		final double[] upper = new double[n];
+		// distance to any other center is at least lower[i]
+		final double[] lower = new double[n];
+		// half the distance from center c to its nearest other center
+		final double[] halfGap = new double[k];
+		// how far each center moved in the last update
+		final double[] moved = new double[k];
+		final double[] previousCoords = new double[k * d];
+		
+		for (int i=0; i<n; i++) {
+			assignExact(coords, i * d, centerCoords, k, d, i, labels, upper, lower);
+		}
+		
+		for (int iter=0; iter<maxIterations; iter++) {
+			System.arraycopy(centerCoords, 0, previousCoords, 0, k * d);
+			updateCenters(points, centers, labels);
+			
+			// center movements, the largest and second largest
+			int farthest = -1;
+			double maxMoved = 0;
+			double secondMoved = 0;
+			for (int c=0; c<k; c++) {
+				moved[c] = Math.sqrt(Distances.squared(centerCoords, c * d, previousCoords, c * d, d));
+				if (moved[c] > maxMoved) {
+					secondMoved = maxMoved;
+					maxMoved = moved[c];
+					farthest = c;
+				}
+				else if (moved[c] > secondMoved) {
+					secondMoved = moved[c];
+				}
+			}
+			
+			// half distance to the nearest other center
+			for (int c=0; c<k; c++) {
+				double min = Double.MAX_VALUE;
+				for (int c2=0; c2<k; c2++) {
+					if (c2 != c) {
+						min = Math.min(min, Distances.squared(centerCoords, c * d, centerCoords, c2 * d, d));
+					}
+				}
+				halfGap[c] = Math.sqrt(min) / 2;
+			}
+			
+			int changed = 0;
+			for (int i=0; i<n; i++) {
+				int label = labels[i];
+				// the other centers moved by at most the largest movement
+				// (the second largest if the farthest center is our own)
+				upper[i] += moved[label];
+				lower[i] -= (label == farthest) ? secondMoved : maxMoved;
+				
+				double bound = Math.max(halfGap[label], lower[i]);
+				if (upper[i] <= bound) {
+					continue;
+				}
+				// tighten the upper bound and check again
+				upper[i] = Math.sqrt(Distances.squared(coords, i * d, centerCoords, label * d, d));
+				if (upper[i] <= bound) {
+					continue;
+				}
+				assignExact(coords, i * d, centerCoords, k, d, i, labels, upper, lower);
+				if (labels[i] != label) {
+					changed++;
+				}
+			}
+			if (changed == 0) {
+				break;
+			}
+		}
+		
+		assignWeights(points, centers, labels);
+		double cost = 0;
+		for (int i=0; i<n; i++) {
+			cost += Distances.squared(coords, i * d, centerCoords, labels[i] * d, d) * points.weight(i);
+		}
+		return cost;
+	}
+	
+	/**
+	 * compare point i with all centers, set its label and exact bounds
+	 */
+	private static void assignExact(double[] coords, int offset, double[] centerCoords, int k, int d,
+			int i, int[] labels, double[] upper, double[] lower) {
+		double min = Double.MAX_VALUE;
+		double second = Double.MAX_VALUE;
+		int label = 0;
+		for (int c=0; c<k; c++) {
+			double dist = Distances.squared(coords, offset, centerCoords, c * d, d);
+			if (dist < min) {
+				second = min;
+				min = dist;
+				label = c;
+			}
+			else if (dist < second) {
+				second = dist;
+			}
+		}
+		labels[i] = label;
+		upper[i] = Math.sqrt(min);
+		lower[i] = Math.sqrt(second);
+	}
+
+	/**
+	 * move every center to the weighted mean of its points,
+	 * a center without points (or with zero weight) stays where it is
+	 * @param points
+	 * @param centers
+	 * @param labels
+	 */
+	static void updateCenters(PointBlock points, PointBlock centers, int[] labels) {
+		final int d = points.dimension();
+		final int k = centers.size();
+		final double[] coords = points.coords();
+		final double[] weights = points.weights();
+		final double[] sums = new double[k * d];
+		final double[] clusterWeights = new double[k];
+		for (int i=0; i<points.size(); i++) {
+			int c = labels[i];
+			double w = weights[i];
+			clusterWeights[c] += w;
+			for (int l=0; l<d; l++) {
+				sums[c * d + l] += w * coords[i * d + l];
+			}
+		}
+		final double[] centerCoords = centers.coords();
+		for (int c=0; c<k; c++) {
+			if (clusterWeights[c] > 0) {
+				for (int l=0; l<d; l++) {
+					centerCoords[c * d + l] = sums[c * d + l] / clusterWeights[c];
+				}
+			}
+		}
+	}
+
+	/**
+	 * set the weight of every center to the total weight of its points
+	 * @param points
+	 * @param centers
+	 * @param labels
+	 */
+	static void assignWeights(PointBlock points, PointBlock centers, int[] labels) {
+		final double[] centerWeights = centers.weights();
+		Arrays.fill(centerWeights, 0, centers.size(), 0);
+		for (int i=0; i<points.size(); i++) {
+			centerWeights[labels[i]] += points.weight(i);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a loop body over a fixed number of chunks on the common fork-join pool.
+ * The chunking is decided by the caller, so results that only depend on the
+ * chunk index (e.g. one random generator per chunk) do not depend on the
+ * scheduling.
+ */
+final class ParallelChunks {
+
+	/**
+	 * work done for one chunk
+	 */
+	interface Body {
+		void run(int chunk);
+	}
+
+	private ParallelChunks() {
+	}
+
+	/**
+	 * run body for chunks [0, numChunks) and wait for all of them
+	 * @param numChunks
+	 * @param body
+	 */
+	static void run(int numChunks, Body body) {
+		if (numChunks <= 0) {
+			return;
+		}
+		if (numChunks == 1 || ForkJoinPool.getCommonPoolParallelism() <= 1) {
+			for (int chunk=0; chunk<numChunks; chunk++) {
+				body.run(chunk);
+			}
+			return;
+		}
+		ForkJoinPool.commonPool().invoke(new Task(body, 0, numChunks));
+	}
+
+	/**
+	 * a power of two chunk size giving a few chunks per worker for n items
+	 * @param n
+	 * @param minChunkSize
+	 * @return
+	 */
+	static int chunkSize(int n, int minChunkSize) {
+		int target = n / (4 * Math.max(ForkJoinPool.getCommonPoolParallelism(), 1));
+		return Math.max(Integer.highestOneBit(Math.max(target, 1)), minChunkSize);
+	}
+
+	private static final class Task extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Body body;
+
+		private final int fromChunk;
+
+		private final int toChunk;
+
+		Task(Body body, int fromChunk, int toChunk) {
+			this.body = body;
+			this.fromChunk = fromChunk;
+			this.toChunk = toChunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (toChunk - fromChunk == 1) {
+				body.run(fromChunk);
+				return;
+			}
+			int mid = (fromChunk + toChunk) >>> 1;
+			invokeAll(new Task(body, fromChunk, mid), new Task(body, mid, toChunk));
+		}
+	}
+}
@@ -0,0 +1,331 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+
+/**
+ * A block of weighted points stored in two flat primitive arrays:
+ * coordinates are row-major (point i occupies [i*dimension, (i+1)*dimension)),
+ * weights are stored in a separate array indexed by point.
+ * This avoids one object (and one array) per point for large coresets.
+ */
+public class PointBlock {
+
+	// number of coordinates per point, 0 until the first point is added
+	private int dimension;
+
+	// number of points stored in the block
+	private int size;
+
+	// row-major coordinates
+	private double[] coords;
+
+	// weight of each point
+	private double[] weights;
+
+	/**
+	 * create an empty block, the dimension is fixed by the first added point
+	 * @param capacity expected number of points
+	 */
+	public PointBlock(int capacity) {
+		this(0, capacity);
+	}
+
+	/**
+	 * create an empty block with known dimension
+	 * @param dimension number of coordinates per point
+	 * @param capacity expected number of points
+	 */
+	public PointBlock(int dimension, int capacity) {
+		this.dimension = dimension;
+		this.size = 0;
+		this.weights = new double[Math.max(capacity, 1)];
+		this.coords = new double[dimension * weights.length];
+	}
+
+	/**
+	 * clone block b (deep copy)
+	 * @param b
+	 */
+	public PointBlock(PointBlock b) {
+		this.dimension = b.dimension;
+		this.size = b.size;
+		this.coords = Arrays.copyOf(b.coords, Math.max(b.size * b.dimension, 1));
+		this.weights = Arrays.copyOf(b.weights, Math.max(b.size, 1));
+	}
+
+	/**
+	 * wrap arrays already holding size points (no copy)
+	 * @param dimension
+	 * @param size
+	 * @param coords at least size*dimension row-major coordinates
+	 * @param weights at least size weights
+	 */
+	PointBlock(int dimension, int size, double[] coords, double[] weights) {
+		this.dimension = dimension;
+		this.size = size;
+		this.coords = coords;
+		this.weights = weights;
+	}
+
+	/**
+	 * copy a list of points into a new block
+	 * @param points
+	 * @return
+	 */
+	public static PointBlock fromPoints(List<Point> points) {
+		int d = points.isEmpty() ? 0 : points.get(0).position.length;
+		PointBlock block = new PointBlock(d, points.size());
+		for (Point p : points) {
+			block.add(p);
+		}
+		return block;
+	}
+
+	/**
+	 * get number of points
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * get number of coordinates per point
+	 * @return
+	 */
+	public int dimension() {
+		return dimension;
+	}
+
+	/**
+	 * raw row-major coordinate array, only the first size()*dimension()
+	 * entries are valid. Exposed for distance kernels, only the in-place
+	 * refinement of centers (Lloyd) writes to it.
+	 * @return
+	 */
+	public double[] coords() {
+		return coords;
+	}
+
+	/**
+	 * raw weight array, only the first size() entries are valid.
+	 * Exposed for distance kernels, only the in-place refinement of
+	 * centers (Lloyd) writes to it.
+	 * @return
+	 */
+	public double[] weights() {
+		return weights;
+	}
+
+	/**
+	 * get weight of point i
+	 * @param i
+	 * @return
+	 */
+	public double weight(int i) {
+		return weights[i];
+	}
+
+	/**
+	 * set weight of point i
+	 * @param i
+	 * @param weight
+	 */
+	public void setWeight(int i, double weight) {
+		weights[i] = weight;
+	}
+
+	/**
+	 * get j-th coordinate of point i
+	 * @param i
+	 * @param j
+	 * @return
+	 */
+	public double coordinate(int i, int j) {
+		return coords[i * dimension + j];
+	}
+
+	/**
+	 * sum of weights of all points
+	 * @return
+	 */
+	public double totalWeight() {
+		double sum = 0;
+		for (int i=0; i<size; i++) {
+			sum += weights[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * add a new point (the position is copied)
+	 * @param p
+	 */
+	public void add(Point p) {
+		add(p.position, 0, p.position.length, p.weight);
+	}
+
+	/**
+	 * add a new point (the position is copied)
+	 * @param position
+	 * @param weight
+	 */
+	public void add(double[] position, double weight) {
+		add(position, 0, position.length, weight);
+	}
+
+	/**
+	 * add a new point whose coordinates are src[offset, offset+d)
+	 * @param src
+	 * @param offset
+	 * @param d dimension of the point
+	 * @param weight
+	 */
+	public void add(double[] src, int offset, int d, double weight) {
+		checkDimension(d);
+		ensureCapacity(size + 1);
+		System.arraycopy(src, offset, coords, size * dimension, dimension);
+		weights[size] = weight;
+		size++;
+	}
+
+	/**
+	 * add count points from a row-major array
+	 * @param src coordinates, point j is src[offset + j*d, offset + (j+1)*d)
+	 * @param offset
+	 * @param count
+	 * @param d dimension of the points
+	 * @param srcWeights weight of point j is srcWeights[weightOffset + j], null for weight 1
+	 * @param weightOffset
+	 */
+	public void addRows(double[] src, int offset, int count, int d, double[] srcWeights, int weightOffset) {
+		if (count <= 0) {
+			return;
+		}
+		checkDimension(d);
+		ensureCapacity(size + count);
+		System.arraycopy(src, offset, coords, size * dimension, count * dimension);
+		if (srcWeights == null) {
+			Arrays.fill(weights, size, size + count, 1.0);
+		}
+		else {
+			System.arraycopy(srcWeights, weightOffset, weights, size, count);
+		}
+		size += count;
+	}
+
+	/**
+	 * add point i of another block
+	 * @param other
+	 * @param i
+	 */
+	public void add(PointBlock other, int i) {
+		add(other.coords, i * other.dimension, other.dimension, other.weights[i]);
+	}
+
+	/**
+	 * add all points of another block
+	 * @param other
+	 */
+	public void addAll(PointBlock other) {
+		addRange(other, 0, other.size);
+	}
+
+	/**
+	 * add points [from, to) of another block
+	 * @param other
+	 * @param from
+	 * @param to
+	 */
+	public void addRange(PointBlock other, int from, int to) {
+		if (from >= to) {
+			return;
+		}
+		checkDimension(other.dimension);
+		int count = to - from;
+		ensureCapacity(size + count);
+		System.arraycopy(other.coords, from * dimension, coords, size * dimension, count * dimension);
+		System.arraycopy(other.weights, from, weights, size, count);
+		size += count;
+	}
+
+	/**
+	 * copy point i out of the block
+	 * @param i
+	 * @return
+	 */
+	public Point getPoint(int i) {
+		if (i < 0 || i >= size) {
+			throw new OutOfRangeException(i, 0, size - 1);
+		}
+		return new Point(Arrays.copyOfRange(coords, i * dimension, (i + 1) * dimension), weights[i]);
+	}
+
+	/**
+	 * copy all points out of the block
+	 * @return
+	 */
+	public List<Point> toPoints() {
+		List<Point> points = new ArrayList<>(size);
+		for (int i=0; i<size; i++) {
+			points.add(getPoint(i));
+		}
+		return points;
+	}
+
+	/**
+	 * squared euclidean distance between point i of this block
+	 * and point j of another block
+	 * @param i
+	 * @param other
+	 * @param j
+	 * @return
+	 */
+	public double squaredDistance(int i, PointBlock other, int j) {
+		return Distances.squared(coords, i * dimension, other.coords, j * other.dimension, dimension);
+	}
+
+	/**
+	 * make the block hold size points of dimension d whose values are then
+	 * written directly into coords() and weights() (bulk loading)
+	 * @param d
+	 * @param size
+	 */
+	void resize(int d, int size) {
+		this.size = 0;
+		checkDimension(d);
+		ensureCapacity(size);
+		this.size = size;
+	}
+
+	/**
+	 * remove all points, keep the allocated arrays
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	private void checkDimension(int d) {
+		if (dimension == 0 && size == 0) {
+			dimension = d;
+			coords = new double[d * weights.length];
+		}
+		else if (d != dimension) {
+			throw new DimensionMismatchException(d, dimension);
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= weights.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, weights.length + (weights.length >> 1));
+		coords = Arrays.copyOf(coords, newCapacity * dimension);
+		weights = Arrays.copyOf(weights, newCapacity);
+	}
+}
@@ -0,0 +1,26 @@
+package edu.iastate.datasketches.clustering;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A stream of weighted points read in batches into a reused PointBlock,
+ * e.g. to feed {@link KMeansSketch#clusterBatch(PointBlock)}.
+ */
+public interface PointSource extends Closeable {
+
+	/**
+	 * get number of coordinates per point
+	 * @return
+	 */
+	int dimension();
+
+	/**
+	 * clear batch and fill it with the next points
+	 * @param batch
+	 * @param maxPoints
+	 * @return number of points read, 0 at the end of the stream
+	 * @throws IOException
+	 */
+	int nextBatch(PointBlock batch, int maxPoints) throws IOException;
+}
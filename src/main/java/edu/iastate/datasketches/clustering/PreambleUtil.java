@@ -0,0 +1,222 @@
+package edu.iastate.datasketches.clustering;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * Layout of a serialized KMeansSketch. All values are in native byte order.
+ *
+ * <pre>
+ * Byte  0: serialization version   Byte  1: family id
+ * Byte  2: seeding ordinal         Byte  3: unused
+ * Bytes 4-7: k                     Bytes 8-11: bucket size m
+ * Bytes 12-15: merge threshold r   Bytes 16-19: iterations
+ * Bytes 20-23: trials              Bytes 24-27: dimension
+ * Bytes 28-31: number of levels    Bytes 32-35: number of pending buckets
+ * Bytes 36-39: size of bucket 0
+ * Bytes 40-  : number of buckets of each level (int), padded to 8 bytes
+ * </pre>
+ *
+ * The buckets follow the preamble: the levels from level 0 up, then the
+ * pending buckets, then bucket 0. Every bucket except bucket 0 holds m
+ * points. A bucket of n points is stored as n*dimension row-major
+ * coordinates followed by n weights (doubles), so it stays 8-byte aligned.
+ */
+final class PreambleUtil {
+
+	static final byte SER_VER = 1;
+
+	static final byte FAMILY_ID = 32;
+
+	static final int SER_VER_BYTE = 0;
+
+	static final int FAMILY_BYTE = 1;
+
+	static final int SEEDING_BYTE = 2;
+
+	static final int K_INT = 4;
+
+	static final int M_INT = 8;
+
+	static final int R_INT = 12;
+
+	static final int ITERS_INT = 16;
+
+	static final int TRIALS_INT = 20;
+
+	static final int DIMENSION_INT = 24;
+
+	static final int NUM_LEVELS_INT = 28;
+
+	static final int NUM_PENDING_INT = 32;
+
+	static final int BUCKET0_SIZE_INT = 36;
+
+	static final int LEVEL_COUNTS_START = 40;
+
+	// largest array length the JVM allocates
+	static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	private PreambleUtil() {
+	}
+
+	/**
+	 * size of the preamble including the per-level bucket counts
+	 * @param numLevels
+	 * @return
+	 */
+	static long preambleBytes(int numLevels) {
+		return LEVEL_COUNTS_START + (((4L * numLevels) + 7) & ~7L);
+	}
+
+	/**
+	 * size of a serialized bucket
+	 * @param size number of points
+	 * @param dimension
+	 * @return
+	 */
+	static long bucketBytes(int size, int dimension) {
+		return 8L * size * (dimension + 1);
+	}
+
+	/**
+	 * check that length elements fit in one Java array
+	 * @param length
+	 * @param what what is stored, for the message
+	 * @return length
+	 */
+	static int checkArrayLength(long length, String what) {
+		if (length < 0 || length > MAX_ARRAY_LENGTH) {
+			throw new SketchesArgumentException(what + " too large for one array: " + length);
+		}
+		return (int) length;
+	}
+
+	/**
+	 * write the preamble and the bucket counts of the first numLevels levels
+	 * @param mem
+	 * @param k
+	 * @param m
+	 * @param r
+	 * @param iters
+	 * @param trials
+	 * @param seeding
+	 * @param dimension
+	 * @param levelCounts
+	 * @param numLevels
+	 * @param numPending
+	 * @param bucket0Size
+	 */
+	static void putPreamble(WritableMemory mem, int k, int m, int r, int iters, int trials,
+			SeedingStrategy seeding, int dimension, int[] levelCounts, int numLevels, 
+			int numPending, int bucket0Size) {
+		mem.putByte(SER_VER_BYTE, SER_VER);
+		mem.putByte(FAMILY_BYTE, FAMILY_ID);
+		mem.putByte(SEEDING_BYTE, (byte) seeding.ordinal());
+		mem.putInt(K_INT, k);
+		mem.putInt(M_INT, m);
+		mem.putInt(R_INT, r);
+		mem.putInt(ITERS_INT, iters);
+		mem.putInt(TRIALS_INT, trials);
+		mem.putInt(DIMENSION_INT, dimension);
+		mem.putInt(NUM_LEVELS_INT, numLevels);
+		mem.putInt(NUM_PENDING_INT, numPending);
+		mem.putInt(BUCKET0_SIZE_INT, bucket0Size);
+		for (int i=0; i<numLevels; i++) {
+			mem.putInt(LEVEL_COUNTS_START + 4L * i, levelCounts[i]);
+		}
+	}
+
+	/**
+	 * write the coordinates and weights of a block at offset
+	 * @param block
+	 * @param mem
+	 * @param offset
+	 * @return offset after the block
+	 */
+	static long putBlock(PointBlock block, WritableMemory mem, long offset) {
+		int n = block.size();
+		int length = n * block.dimension();
+		mem.putDoubleArray(offset, block.coords(), 0, length);
+		offset += 8L * length;
+		mem.putDoubleArray(offset, block.weights(), 0, n);
+		return offset + 8L * n;
+	}
+
+	/**
+	 * read a block of size points stored at offset
+	 * @param mem
+	 * @param offset
+	 * @param size
+	 * @param dimension
+	 * @param capacity at least size, capacity of the returned block
+	 * @return
+	 */
+	static PointBlock getBlock(Memory mem, long offset, int size, int dimension, int capacity) {
+		double[] coords = new double[capacity * dimension];
+		double[] weights = new double[capacity];
+		mem.getDoubleArray(offset, coords, 0, size * dimension);
+		mem.getDoubleArray(offset + 8L * size * dimension, weights, 0, size);
+		return new PointBlock(dimension, size, coords, weights);
+	}
+
+	/**
+	 * check version, family and that the image is as long as its preamble says
+	 * @param mem
+	 * @return total number of bytes of the serialized sketch
+	 */
+	static long checkPreamble(Memory mem) {
+		checkHeader(mem);
+		int m = mem.getInt(M_INT);
+		int dimension = mem.getInt(DIMENSION_INT);
+		int numLevels = mem.getInt(NUM_LEVELS_INT);
+		long bytes = preambleBytes(numLevels);
+		if (mem.getCapacity() < bytes) {
+			throw new SketchesArgumentException("Memory too small for " + numLevels + " levels");
+		}
+		long numBuckets = mem.getInt(NUM_PENDING_INT);
+		for (int i=0; i<numLevels; i++) {
+			int count = mem.getInt(LEVEL_COUNTS_START + 4L * i);
+			if (count < 0) {
+				throw new SketchesArgumentException("Corrupt KMeansSketch preamble");
+			}
+			numBuckets += count;
+		}
+		bytes += numBuckets * bucketBytes(m, dimension) + bucketBytes(mem.getInt(BUCKET0_SIZE_INT), dimension);
+		if (mem.getCapacity() < bytes) {
+			throw new SketchesArgumentException("Memory too small: " + mem.getCapacity() + " < " + bytes);
+		}
+		return bytes;
+	}
+
+	/**
+	 * check version, family and the fixed part of the preamble
+	 * @param mem
+	 */
+	static void checkHeader(Memory mem) {
+		if (mem.getCapacity() < LEVEL_COUNTS_START) {
+			throw new SketchesArgumentException("Memory too small for a KMeansSketch: " + mem.getCapacity());
+		}
+		int serVer = mem.getByte(SER_VER_BYTE);
+		if (serVer != SER_VER) {
+			throw new SketchesArgumentException("Unsupported serialization version: " + serVer);
+		}
+		int family = mem.getByte(FAMILY_BYTE);
+		if (family != FAMILY_ID) {
+			throw new SketchesArgumentException("Not a KMeansSketch, family id: " + family);
+		}
+		int seeding = mem.getByte(SEEDING_BYTE);
+		if (seeding < 0 || seeding >= SeedingStrategy.values().length) {
+			throw new SketchesArgumentException("Unknown seeding strategy: " + seeding);
+		}
+		int m = mem.getInt(M_INT);
+		int dimension = mem.getInt(DIMENSION_INT);
+		int numLevels = mem.getInt(NUM_LEVELS_INT);
+		int numPending = mem.getInt(NUM_PENDING_INT);
+		int bucket0Size = mem.getInt(BUCKET0_SIZE_INT);
+		if (m < 1 || dimension < 0 || numLevels < 0 || numPending < 0 || bucket0Size < 0 || bucket0Size >= m) {
+			throw new SketchesArgumentException("Corrupt KMeansSketch preamble");
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.Random;
+
+/**
+ * How m weighted centers are chosen from a block of weighted points,
+ * both when buckets are merged and when the final centers are computed.
+ */
+public enum SeedingStrategy {
+
+	/**
+	 * D^2 sampling accelerated by the StreamKM++ coreset tree
+	 */
+	FAST_SEEDING {
+		@Override
+		public PointBlock seed(PointBlock points, int m, Random random) {
+			return KMeansPlusPlus.fastSeeding(points, m, random, KMeansPlusPlus.DEFAULT_PARALLEL_THRESHOLD);
+		}
+	},
+
+	/**
+	 * exact k-means++ seeding on the calling thread
+	 */
+	SEEDING {
+		@Override
+		public PointBlock seed(PointBlock points, int m, Random random) {
+			return KMeansPlusPlus.seeding(points, m, random);
+		}
+	},
+
+	/**
+	 * exact k-means++ seeding, distance updates on the common fork-join pool
+	 */
+	PARALLEL_SEEDING {
+		@Override
+		public PointBlock seed(PointBlock points, int m, Random random) {
+			return KMeansPlusPlus.parallelSeeding(points, m, random);
+		}
+	},
+
+	/**
+	 * k-means|| oversampling for a few rounds, candidates reduced by fastSeeding
+	 */
+	KMEANS_PARALLEL {
+		@Override
+		public PointBlock seed(PointBlock points, int m, Random random) {
+			return KMeansPlusPlus.kMeansParallelSeeding(points, m, random,
+					KMeansPlusPlus.DEFAULT_KMEANS_PARALLEL_ROUNDS, KMeansPlusPlus.DEFAULT_OVERSAMPLING_FACTOR);
+		}
+	};
+
+	/**
+	 * choose m centers from points
+	 * @param points
+	 * @param m
+	 * @param random random generator for sampling
+	 * @return m centers
+	 */
+	public abstract PointBlock seed(PointBlock points, int m, Random random);
+}
@@ -0,0 +1,122 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join task of parallelSeeding: lowers the weighted squared distance
+ * minDistSquared[j] of every point not taken to the distance to a new center,
+ * and refreshes the sum tree over minDistSquared. The points are split into
+ * chunks whose size is a power of two, so each chunk owns a disjoint subtree
+ * of the sum tree; the result does not depend on the scheduling.
+ */
+class SeedingUpdateTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	// smallest chunk of points handled by one task
+	static final int MIN_CHUNK_SIZE = 4096;
+
+	private final PointBlock points;
+
+	private final int center;
+
+	// index of the new center in the result
+	private final int centerIndex;
+
+	private final boolean[] taken;
+
+	private final double[] minDistSquared;
+
+	private final int[] nearest;
+
+	private final SumTree sampler;
+
+	private final int chunkSize;
+
+	// chunks [fromChunk, toChunk)
+	private final int fromChunk;
+
+	private final int toChunk;
+
+	SeedingUpdateTask(PointBlock points, int center, int centerIndex, boolean[] taken, double[] minDistSquared,
+			int[] nearest, SumTree sampler, int chunkSize, int fromChunk, int toChunk) {
+		this.points = points;
+		this.center = center;
+		this.centerIndex = centerIndex;
+		this.taken = taken;
+		this.minDistSquared = minDistSquared;
+		this.nearest = nearest;
+		this.sampler = sampler;
+		this.chunkSize = chunkSize;
+		this.fromChunk = fromChunk;
+		this.toChunk = toChunk;
+	}
+
+	@Override
+	protected void compute() {
+		if (toChunk - fromChunk == 1) {
+			updateChunk(fromChunk * chunkSize);
+			return;
+		}
+		int mid = (fromChunk + toChunk) >>> 1;
+		invokeAll(new SeedingUpdateTask(points, center, centerIndex, taken, minDistSquared, nearest,
+						sampler, chunkSize, fromChunk, mid),
+				new SeedingUpdateTask(points, center, centerIndex, taken, minDistSquared, nearest,
+						sampler, chunkSize, mid, toChunk));
+	}
+
+	private void updateChunk(int from) {
+		final int to = Math.min(from + chunkSize, points.size());
+		final int d = points.dimension();
+		final double[] coords = points.coords();
+		final double[] weights = points.weights();
+		final int centerOffset = center * d;
+		for (int j=from; j<to; j++) {
+			// Only have to worry about the points still not taken.
+			if (!taken[j]) {
+				double d2 = Distances.squared(coords, j * d, coords, centerOffset, d) * weights[j];
+				if (d2 < minDistSquared[j]) {
+					minDistSquared[j] = d2;
+					nearest[j] = centerIndex;
+				}
+			}
+		}
+		sampler.setSubtree(minDistSquared, from, chunkSize);
+	}
+
+	/**
+	 * chunk size for n points: a power of two giving a few chunks per worker
+	 * @param n
+	 * @return
+	 */
+	static int chunkSize(int n) {
+		return ParallelChunks.chunkSize(n, MIN_CHUNK_SIZE);
+	}
+
+	/**
+	 * update all points against the center on the common fork-join pool
+	 * and bring the whole sum tree up to date
+	 * @param points
+	 * @param center index of the new center in points
+	 * @param centerIndex index of the new center in the result
+	 * @param taken
+	 * @param minDistSquared
+	 * @param nearest nearest[j] is set to centerIndex if the new center is closer
+	 * @param sampler
+	 * @param chunkSize from {@link #chunkSize(int)}
+	 */
+	static void updateAll(PointBlock points, int center, int centerIndex, boolean[] taken,
+			double[] minDistSquared, int[] nearest, SumTree sampler, int chunkSize) {
+		int numChunks = (points.size() + chunkSize - 1) / chunkSize;
+		SeedingUpdateTask task = new SeedingUpdateTask(points, center, centerIndex, taken, minDistSquared,
+				nearest, sampler, chunkSize, 0, numChunks);
+		if (numChunks == 1) {
+			task.compute();
+		}
+		else {
+			ForkJoinPool.commonPool().invoke(task);
+		}
+		sampler.refreshAbove(chunkSize);
+	}
+}
@@ -0,0 +1,217 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.Arrays;
+
+/**
+ * Binary sum tree over n non-negative values, used for D^2 sampling.
+ * Supports point updates and range updates, prefix sums and
+ * sampling an index with probability proportional to its value,
+ * each in O(log n) (a range update of length l costs O(l + log n)).
+ */
+public class SumTree {
+
+	// number of values
+	private final int size;
+
+	// number of leaves, the smallest power of two >= size
+	private final int capacity;
+
+	// tree[1] is the root, children of node i are 2i and 2i+1,
+	// value i is stored in leaf tree[capacity + i]
+	private final double[] tree;
+
+	/**
+	 * create a tree of size values, all zero
+	 * @param size
+	 */
+	public SumTree(int size) {
+		this.size = size;
+		int c = 1;
+		while (c < size) {
+			c <<= 1;
+		}
+		this.capacity = c;
+		this.tree = new double[2 * c];
+	}
+
+	/**
+	 * get number of values
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * replace all values by values[0, size) in O(n),
+	 * missing values (if values is shorter) are set to zero
+	 * @param values
+	 */
+	public void build(double[] values) {
+		int length = Math.min(size, values.length);
+		System.arraycopy(values, 0, tree, capacity, length);
+		Arrays.fill(tree, capacity + length, 2 * capacity, 0);
+		for (int i=capacity-1; i>=1; i--) {
+			tree[i] = tree[2 * i] + tree[2 * i + 1];
+		}
+	}
+
+	/**
+	 * get value i
+	 * @param i
+	 * @return
+	 */
+	public double get(int i) {
+		return tree[capacity + i];
+	}
+
+	/**
+	 * set value i
+	 * @param i
+	 * @param value
+	 */
+	public void set(int i, double value) {
+		int node = capacity + i;
+		tree[node] = value;
+		node >>= 1;
+		while (node >= 1) {
+			tree[node] = tree[2 * node] + tree[2 * node + 1];
+			node >>= 1;
+		}
+	}
+
+	/**
+	 * set values [from, to) to values[from, to)
+	 * @param values
+	 * @param from
+	 * @param to
+	 */
+	public void setRange(double[] values, int from, int to) {
+		if (from >= to) {
+			return;
+		}
+		System.arraycopy(values, from, tree, capacity + from, to - from);
+		// recompute the inner nodes covering the range, level by level
+		int lo = (capacity + from) >> 1;
+		int hi = (capacity + to - 1) >> 1;
+		while (lo >= 1) {
+			for (int node=lo; node<=hi; node++) {
+				tree[node] = tree[2 * node] + tree[2 * node + 1];
+			}
+			lo >>= 1;
+			hi >>= 1;
+		}
+	}
+
+	/**
+	 * set values [from, from+span) to values[from, from+span) (values beyond
+	 * size() are ignored) and recompute the subtree holding them, but none of
+	 * its ancestors. span must be a power of two and from a multiple of span,
+	 * so that calls on disjoint ranges touch disjoint nodes and can run
+	 * concurrently. Call {@link #refreshAbove(int)} once they are all done.
+	 * @param values
+	 * @param from
+	 * @param span
+	 */
+	public void setSubtree(double[] values, int from, int span) {
+		span = Math.min(span, capacity);
+		int to = Math.min(from + span, size);
+		System.arraycopy(values, from, tree, capacity + from, to - from);
+		int lo = (capacity + from) >> 1;
+		int hi = (capacity + from + span - 1) >> 1;
+		for (int width=span>>1; width>=1; width>>=1) {
+			for (int node=lo; node<=hi; node++) {
+				tree[node] = tree[2 * node] + tree[2 * node + 1];
+			}
+			lo >>= 1;
+			hi >>= 1;
+		}
+	}
+
+	/**
+	 * recompute all nodes above the subtrees of the given span,
+	 * see {@link #setSubtree(double[], int, int)}
+	 * @param span
+	 */
+	public void refreshAbove(int span) {
+		int roots = capacity / Math.min(span, capacity);
+		for (int node=roots-1; node>=1; node--) {
+			tree[node] = tree[2 * node] + tree[2 * node + 1];
+		}
+	}
+
+	/**
+	 * sum of all values
+	 * @return
+	 */
+	public double total() {
+		return tree[1];
+	}
+
+	/**
+	 * sum of values [0, i)
+	 * @param i
+	 * @return
+	 */
+	public double prefixSum(int i) {
+		double sum = 0;
+		int lo = capacity;
+		int hi = capacity + i;
+		// sum of leaves [lo, hi)
+		while (lo < hi) {
+			if ((lo & 1) == 1) {
+				sum += tree[lo++];
+			}
+			if ((hi & 1) == 1) {
+				sum += tree[--hi];
+			}
+			lo >>= 1;
+			hi >>= 1;
+		}
+		return sum;
+	}
+
+	/**
+	 * find the smallest index i such that prefixSum(i+1) > target.
+	 * If target is not below total() (rounding), the last index with
+	 * a positive value is returned.
+	 * @param target
+	 * @return -1 if all values are zero
+	 */
+	public int search(double target) {
+		if (!(tree[1] > 0)) {
+			return -1;
+		}
+		int node = 1;
+		while (node < capacity) {
+			int left = 2 * node;
+			// go right only if there is positive mass on the right
+			if (target < tree[left] || !(tree[left + 1] > 0)) {
+				node = left;
+			}
+			else {
+				target -= tree[left];
+				node = left + 1;
+			}
+		}
+		return node - capacity;
+	}
+
+	/**
+	 * sample an index in [from, to) with probability proportional to its value
+	 * @param from
+	 * @param to
+	 * @param u uniform random number in [0, 1)
+	 * @return an index in [from, to), to-1 if the values in the range are all zero
+	 */
+	public int sample(int from, int to, double u) {
+		double offset = prefixSum(from);
+		double rangeSum = prefixSum(to) - offset;
+		if (!(rangeSum > 0)) {
+			return to - 1;
+		}
+		int i = search(offset + u * rangeSum);
+		// the prefix sums may disagree with the range in the last bits
+		return Math.min(Math.max(i, from), to - 1);
+	}
+}
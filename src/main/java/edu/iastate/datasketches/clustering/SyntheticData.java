@@ -0,0 +1,145 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.Random;
+
+/**
+ * Reproducible synthetic data sets: mixtures of spherical clusters whose
+ * means are uniform in [-spread, spread]^d, with unit-variance Gaussian
+ * noise or heavy-tailed noise (Student's t with 3 degrees of freedom).
+ * The same seed always gives the same points.
+ */
+public class SyntheticData {
+
+	/**
+	 * generate n points of weight 1 from a Gaussian mixture
+	 * @param n
+	 * @param d
+	 * @param numClusters number of Gaussians
+	 * @param spread means are uniform in [-spread, spread]^d
+	 * @param seed
+	 * @return
+	 */
+	public static PointBlock gaussianMixture(int n, int d, int numClusters, double spread, long seed) {
+		return generate(n, new Generator(d, numClusters, spread, false, seed));
+	}
+
+	/**
+	 * generate n points of weight 1 from a mixture of heavy-tailed clusters,
+	 * a few points are far away from every cluster
+	 * @param n
+	 * @param d
+	 * @param numClusters
+	 * @param spread means are uniform in [-spread, spread]^d
+	 * @param seed
+	 * @return
+	 */
+	public static PointBlock heavyTailedMixture(int n, int d, int numClusters, double spread, long seed) {
+		return generate(n, new Generator(d, numClusters, spread, true, seed));
+	}
+
+	/**
+	 * stream n points of weight 1 from a Gaussian mixture without storing
+	 * them, the stream is the same as {@link #gaussianMixture(int, int, int, double, long)}
+	 * @param n
+	 * @param d
+	 * @param numClusters
+	 * @param spread
+	 * @param seed
+	 * @return
+	 */
+	public static PointSource gaussianMixtureSource(long n, int d, int numClusters, double spread, long seed) {
+		return source(n, new Generator(d, numClusters, spread, false, seed));
+	}
+
+	/**
+	 * stream n points of weight 1 from a mixture of heavy-tailed clusters, the
+	 * stream is the same as {@link #heavyTailedMixture(int, int, int, double, long)}
+	 * @param n
+	 * @param d
+	 * @param numClusters
+	 * @param spread
+	 * @param seed
+	 * @return
+	 */
+	public static PointSource heavyTailedMixtureSource(long n, int d, int numClusters, double spread, long seed) {
+		return source(n, new Generator(d, numClusters, spread, true, seed));
+	}
+
+	private static PointBlock generate(int n, Generator generator) {
+		PointBlock points = new PointBlock(generator.d, n);
+		double[] row = new double[generator.d];
+		for (int i=0; i<n; i++) {
+			generator.next(row);
+			points.add(row, 0, generator.d, 1.0);
+		}
+		return points;
+	}
+
+	private static PointSource source(final long n, final Generator generator) {
+		final int d = generator.d;
+		return new PointSource() {
+			private final double[] row = new double[d];
+			
+			private long remaining = n;
+
+			@Override
+			public int dimension() {
+				return d;
+			}
+
+			@Override
+			public int nextBatch(PointBlock batch, int maxPoints) {
+				batch.clear();
+				int count = (int) Math.min(maxPoints, remaining);
+				for (int i=0; i<count; i++) {
+					generator.next(row);
+					batch.add(row, 0, d, 1.0);
+				}
+				remaining -= count;
+				return count;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	private static final class Generator {
+
+		private final int d;
+
+		private final double[] means;
+
+		private final boolean heavyTailed;
+
+		private final Random random;
+
+		Generator(int d, int numClusters, double spread, boolean heavyTailed, long seed) {
+			this.d = d;
+			this.heavyTailed = heavyTailed;
+			this.random = new Random(seed);
+			this.means = new double[numClusters * d];
+			for (int i=0; i<means.length; i++) {
+				means[i] = (2 * random.nextDouble() - 1) * spread;
+			}
+		}
+
+		void next(double[] row) {
+			int cluster = random.nextInt(means.length / d);
+			double scale = 1;
+			if (heavyTailed) {
+				// t = z / sqrt(chi2(3) / 3), shared by all coordinates of the point
+				double chi2 = 0;
+				for (int l=0; l<3; l++) {
+					double z = random.nextGaussian();
+					chi2 += z * z;
+				}
+				scale = 1 / Math.sqrt(chi2 / 3);
+			}
+			for (int j=0; j<d; j++) {
+				row[j] = means[cluster * d + j] + scale * random.nextGaussian();
+			}
+		}
+	}
+}
@@ -1,33 +1,32 @@
-
-package edu.iastate.datasketches.clustering;
-
-import java.util.ArrayList;
-import java.util.List;
-
-import org.apache.commons.math3.util.Pair;
-
-public class TreeNode {
-	
-	// cluster center
-	Point center;
-	
-	// <member point, weighted-cost to center>
-	List<Pair<Point, Double>> members;
-	
-	// number of member points
-	int numMembers;
-	
-	// weighted-cost of all members to center
-	double weight;   
-	
-	TreeNode left;
-	
-	TreeNode right;
-	
-	TreeNode parent;
-	
-	public TreeNode(Point center) {
-		this.center = new Point(center);
-		this.members = new ArrayList<>();
-	}
-}
+
+package edu.iastate.datasketches.clustering;
+
+public class TreeNode {
+	
+	// index of the cluster center in the input point block
+	int center;
+	
+	// member points are pointIndex[start, end) of the coreset tree arrays
+	int start;
+	
+	int end;
+	
+	// number of member points
+	int numMembers;
+	
+	// weighted-cost of all members to center
+	double weight;   
+	
+	TreeNode left;
+	
+	TreeNode right;
+	
+	TreeNode parent;
+	
+	public TreeNode(int center, int start, int end) {
+		this.center = center;
+		this.start = start;
+		this.end = end;
+		this.numMembers = end - start;
+	}
+}
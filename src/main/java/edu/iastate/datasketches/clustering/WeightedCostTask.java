@@ -0,0 +1,97 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join task computing the weighted-cost (D^2 times weight) of the
+ * points pointIndex[from, to) to one center, written to cost[from, to).
+ * Used by the coreset tree in fastSeeding to evaluate large ranges on all cores.
+ */
+class WeightedCostTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	// ranges at most this long are evaluated sequentially
+	static final int MIN_CHUNK_SIZE = 4096;
+
+	private final PointBlock points;
+
+	private final int center;
+
+	private final int[] pointIndex;
+
+	private final double[] cost;
+
+	private final int from;
+
+	private final int to;
+
+	private final int chunkSize;
+
+	/**
+	 * @param points input points
+	 * @param center index of the center in points
+	 * @param pointIndex indices of the points to evaluate
+	 * @param cost output, cost[i] is the cost of point pointIndex[i]
+	 * @param from
+	 * @param to
+	 * @param chunkSize ranges at most this long are not split further
+	 */
+	WeightedCostTask(PointBlock points, int center, int[] pointIndex, double[] cost,
+			int from, int to, int chunkSize) {
+		this.points = points;
+		this.center = center;
+		this.pointIndex = pointIndex;
+		this.cost = cost;
+		this.from = from;
+		this.to = to;
+		this.chunkSize = Math.max(chunkSize, MIN_CHUNK_SIZE);
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from <= chunkSize) {
+			computeRange(points, center, pointIndex, cost, from, to);
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		invokeAll(new WeightedCostTask(points, center, pointIndex, cost, from, mid, chunkSize),
+				new WeightedCostTask(points, center, pointIndex, cost, mid, to, chunkSize));
+	}
+
+	/**
+	 * evaluate cost[from, to) on the calling thread
+	 * @param points
+	 * @param center
+	 * @param pointIndex
+	 * @param cost
+	 * @param from
+	 * @param to
+	 */
+	static void computeRange(PointBlock points, int center, int[] pointIndex, double[] cost, int from, int to) {
+		final int d = points.dimension();
+		final double[] coords = points.coords();
+		final double[] weights = points.weights();
+		final int centerOffset = center * d;
+		for (int i=from; i<to; i++) {
+			int p = pointIndex[i];
+			cost[i] = Distances.squared(coords, p * d, coords, centerOffset, d) * weights[p];
+		}
+	}
+
+	/**
+	 * evaluate cost[from, to) on the common fork-join pool
+	 * @param points
+	 * @param center
+	 * @param pointIndex
+	 * @param cost
+	 * @param from
+	 * @param to
+	 */
+	static void computeAll(PointBlock points, int center, int[] pointIndex, double[] cost, int from, int to) {
+		// a few chunks per worker so that uneven chunks balance out
+		int chunkSize = (to - from) / (4 * Math.max(ForkJoinPool.getCommonPoolParallelism(), 1));
+		ForkJoinPool.commonPool().invoke(new WeightedCostTask(points, center, pointIndex, cost, from, to, chunkSize));
+	}
+}
@@ -0,0 +1,191 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NoDataException;
+
+import com.yahoo.memory.Memory;
+
+/**
+ * Read-only view of a serialized KMeansSketch (see {@link KMeansSketch#toByteArray()})
+ * in a Memory, which may be on the heap, off-heap or a memory-mapped file.
+ * Nothing is deserialized when wrapping: getCenters copies the packed
+ * coordinates and weights in bulk into a single PointBlock, and merges read
+ * the buckets one level at a time.
+ */
+public class WrappedKMeansSketch {
+
+	private final Memory mem;
+
+	private final int k;
+
+	private final int m;
+
+	private final int r;
+
+	private final int iters;
+
+	private final int trials;
+
+	private final SeedingStrategy seeding;
+
+	private final int dimension;
+
+	private final int bucket0Size;
+
+	// bucketOffsets[i] is the offset of the first bucket of level i,
+	// bucketOffsets[numLevels] of the first pending bucket and
+	// bucketOffsets[numLevels+1] of bucket 0
+	private final long[] bucketOffsets;
+
+	// number of buckets of each level, then the number of pending buckets
+	private final int[] bucketCounts;
+
+	private WrappedKMeansSketch(Memory mem) {
+		PreambleUtil.checkPreamble(mem);
+		this.mem = mem;
+		this.k = mem.getInt(PreambleUtil.K_INT);
+		this.m = mem.getInt(PreambleUtil.M_INT);
+		this.r = mem.getInt(PreambleUtil.R_INT);
+		this.iters = mem.getInt(PreambleUtil.ITERS_INT);
+		this.trials = mem.getInt(PreambleUtil.TRIALS_INT);
+		this.seeding = SeedingStrategy.values()[mem.getByte(PreambleUtil.SEEDING_BYTE)];
+		this.dimension = mem.getInt(PreambleUtil.DIMENSION_INT);
+		this.bucket0Size = mem.getInt(PreambleUtil.BUCKET0_SIZE_INT);
+		
+		int numLevels = mem.getInt(PreambleUtil.NUM_LEVELS_INT);
+		this.bucketCounts = new int[numLevels + 1];
+		this.bucketOffsets = new long[numLevels + 2];
+		for (int i=0; i<numLevels; i++) {
+			bucketCounts[i] = mem.getInt(PreambleUtil.LEVEL_COUNTS_START + 4L * i);
+		}
+		bucketCounts[numLevels] = mem.getInt(PreambleUtil.NUM_PENDING_INT);
+		bucketOffsets[0] = PreambleUtil.preambleBytes(numLevels);
+		for (int i=0; i<=numLevels; i++) {
+			bucketOffsets[i + 1] = bucketOffsets[i] + bucketCounts[i] * PreambleUtil.bucketBytes(m, dimension);
+		}
+	}
+
+	/**
+	 * wrap a serialized sketch, the memory must not change while it is wrapped
+	 * @param srcMem
+	 * @return
+	 */
+	public static WrappedKMeansSketch wrap(Memory srcMem) {
+		return new WrappedKMeansSketch(srcMem);
+	}
+
+	/**
+	 * Compute k centers from the serialized coreset tree
+	 * @return list of k points as cluster centers
+	 */
+	public List<Point> getCenters() {
+		long totalBuckets = 0;
+		for (int count : bucketCounts) {
+			totalBuckets += count;
+		}
+		int unionSize = PreambleUtil.checkArrayLength(totalBuckets * m + bucket0Size, "Union of all buckets");
+		double[] coords = new double[PreambleUtil.checkArrayLength((long) unionSize * dimension, "Union of all buckets")];
+		int numBuckets = (int) totalBuckets;
+		double[] weights = new double[Math.max(unionSize, 1)];
+		
+		// buckets are contiguous, each one is its coordinates then its weights
+		long offset = bucketOffsets[0];
+		for (int b=0; b<=numBuckets; b++) {
+			int size = (b < numBuckets) ? m : bucket0Size;
+			mem.getDoubleArray(offset, coords, b * m * dimension, size * dimension);
+			offset += 8L * size * dimension;
+			mem.getDoubleArray(offset, weights, b * m, size);
+			offset += 8L * size;
+		}
+		
+		PointBlock coresets = new PointBlock(dimension, unionSize, coords, weights);
+		return KMeansPlusPlus.multiKMeansPlusPlus(coresets, k, iters, trials, seeding).toPoints();
+	}
+
+	/**
+	 * Merge with another wrapped sketch
+	 * @see #mergeAll(Collection)
+	 * @param anotherSketch
+	 * @return a new kmeans-sketch on the heap with the merged coreset tree
+	 */
+	public KMeansSketch merge(WrappedKMeansSketch anotherSketch) {
+		return mergeAll(Arrays.asList(this, anotherSketch));
+	}
+
+	/**
+	 * Merge any number of wrapped sketches, like {@link KMeansSketch#mergeAll(Collection)}.
+	 * The buckets of a level are only read from the memories when that level
+	 * is merged.
+	 * @param sketches sketches with the same bucket size and merge threshold,
+	 * the parameters of the first one are used for the result
+	 * @return a new kmeans-sketch on the heap with the merged coreset tree
+	 */
+	public static KMeansSketch mergeAll(Collection<WrappedKMeansSketch> sketches) {
+		if (sketches.isEmpty()) {
+			throw new NoDataException();
+		}
+		WrappedKMeansSketch first = sketches.iterator().next();
+		List<KMeansSketch.State> states = new ArrayList<>(sketches.size());
+		for (WrappedKMeansSketch sketch : sketches) {
+			if (sketch.m != first.m) {
+				throw new DimensionMismatchException(sketch.m, first.m);
+			}
+			if (sketch.r != first.r) {
+				throw new DimensionMismatchException(sketch.r, first.r);
+			}
+			states.add(sketch.state());
+		}
+		return KMeansSketch.mergeStates(first.k, first.m, first.r, first.iters, first.trials, first.seeding, states);
+	}
+
+	/**
+	 * deserialize into a regular sketch that can be updated
+	 * @return
+	 */
+	public KMeansSketch toHeap() {
+		return KMeansSketch.heapify(mem);
+	}
+
+	/**
+	 * the serialized sketch as a snapshot whose levels are read on access
+	 * @return
+	 */
+	private KMeansSketch.State state() {
+		final int numLevels = bucketCounts.length - 1;
+		List<List<Bucket>> coresetTree = new AbstractList<List<Bucket>>() {
+			@Override
+			public List<Bucket> get(int i) {
+				return readBuckets(i);
+			}
+
+			@Override
+			public int size() {
+				return numLevels;
+			}
+		};
+		Bucket b0 = new Bucket(m, PreambleUtil.getBlock(mem, bucketOffsets[numLevels + 1], bucket0Size, dimension, m));
+		b0.publish();
+		return new KMeansSketch.State(coresetTree, readBuckets(numLevels), b0);
+	}
+
+	/**
+	 * read the buckets of a level (or the pending buckets for the last index)
+	 * @param i
+	 * @return
+	 */
+	private List<Bucket> readBuckets(int i) {
+		List<Bucket> buckets = new ArrayList<>(bucketCounts[i]);
+		long offset = bucketOffsets[i];
+		for (int b=0; b<bucketCounts[i]; b++) {
+			buckets.add(new Bucket(m, PreambleUtil.getBlock(mem, offset, m, dimension, m)));
+			offset += PreambleUtil.bucketBytes(m, dimension);
+		}
+		return buckets;
+	}
+}
@@ -0,0 +1,117 @@
+package edu.iastate.liberty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.exception.NumberIsTooSmallException;
+
+import edu.iastate.datasketches.clustering.Distances;
+import edu.iastate.datasketches.clustering.KMeansPlusPlus;
+import edu.iastate.datasketches.clustering.Point;
+import edu.iastate.datasketches.clustering.PointBlock;
+
+/**
+ * The facilities opened by an online clusterer. Each facility owns a copy
+ * of the point that opened it and a weight, the total weight of the points
+ * assigned to it. When more than budget facilities are open, they are
+ * compacted into budget/2 weighted representatives by D^2 sampling over a
+ * coreset tree, which keeps the total weight.
+ */
+final class FacilitySet {
+
+	// opened facilities, weight is the total weight of assigned points
+	private final List<Point> facilities;
+
+	// nearest neighbor search over facilities
+	private final NearestCenterIndex index;
+
+	// maximum number of facilities kept
+	private final int budget;
+
+	private final Random randSeed;
+
+	// facility found by the last search
+	private int nearest;
+
+	/**
+	 * @param index empty index
+	 * @param budget maximum number of facilities, Integer.MAX_VALUE for unbounded
+	 * @param minBudget smallest budget the clusterer supports
+	 * @param randSeed random generator for compaction
+	 */
+	FacilitySet(NearestCenterIndex index, int budget, int minBudget, Random randSeed) {
+		if (budget < minBudget) {
+			throw new NumberIsTooSmallException(budget, minBudget, true);
+		}
+		this.facilities = new ArrayList<Point>();
+		this.index = index;
+		this.budget = budget;
+		this.randSeed = randSeed;
+		this.nearest = -1;
+	}
+
+	/**
+	 * squared distance from p to its nearest facility,
+	 * which is remembered for assignToNearest
+	 * @param p
+	 * @return Double.MAX_VALUE if no facility is open
+	 */
+	double nearestSquaredDistance(Point p) {
+		nearest = index.nearest(p.position);
+		if (nearest < 0) {
+			return Double.MAX_VALUE;
+		}
+		return Distances.squared(p.position, facilities.get(nearest).position);
+	}
+
+	/**
+	 * add the weight of p to the facility found by the last search
+	 * @param p
+	 */
+	void assignToNearest(Point p) {
+		facilities.get(nearest).weight += p.weight;
+	}
+
+	/**
+	 * open a facility at a copy of p, then compact if over budget
+	 * @param p
+	 */
+	void open(Point p) {
+		Point facility = new Point(p);
+		facilities.add(facility);
+		index.add(facility.position);
+		nearest = -1;
+		if (facilities.size() > budget) {
+			compact();
+		}
+	}
+
+	/**
+	 * get number of facilities
+	 * @return
+	 */
+	int size() {
+		return facilities.size();
+	}
+
+	/**
+	 * opened facilities, the list is updated in place on compaction
+	 * @return
+	 */
+	List<Point> getFacilities() {
+		return facilities;
+	}
+
+	private void compact() {
+		PointBlock representatives = KMeansPlusPlus.fastSeeding(PointBlock.fromPoints(facilities),
+				Math.max(budget / 2, 1), randSeed, KMeansPlusPlus.DEFAULT_PARALLEL_THRESHOLD);
+		facilities.clear();
+		index.clear();
+		for (int i=0; i<representatives.size(); i++) {
+			Point facility = representatives.getPoint(i);
+			facilities.add(facility);
+			index.add(facility.position);
+		}
+	}
+}
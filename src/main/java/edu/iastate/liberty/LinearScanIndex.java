@@ -0,0 +1,37 @@
+package edu.iastate.liberty;
+
+import edu.iastate.datasketches.clustering.Distances;
+import edu.iastate.datasketches.clustering.PointBlock;
+
+/**
+ * Compares the query with every center, kept in one flat array.
+ */
+public class LinearScanIndex implements NearestCenterIndex {
+
+	private final PointBlock centers = new PointBlock(16);
+
+	@Override
+	public void add(double[] position) {
+		centers.add(position, 1);
+	}
+
+	@Override
+	public int nearest(double[] position) {
+		return Distances.nearest(position, 0, centers);
+	}
+
+	@Override
+	public double nearestSquaredDistance(double[] position) {
+		return Distances.minSquared(position, 0, centers);
+	}
+
+	@Override
+	public int size() {
+		return centers.size();
+	}
+
+	@Override
+	public void clear() {
+		centers.clear();
+	}
+}
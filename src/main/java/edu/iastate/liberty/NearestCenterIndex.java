@@ -0,0 +1,39 @@
+package edu.iastate.liberty;
+
+/**
+ * Nearest neighbor search over the facilities opened by an online
+ * clusterer. Centers are numbered in the order they are added.
+ */
+public interface NearestCenterIndex {
+
+	/**
+	 * add a center (the position is copied)
+	 * @param position
+	 */
+	void add(double[] position);
+
+	/**
+	 * index of the center nearest to position
+	 * @param position
+	 * @return -1 if there is no center
+	 */
+	int nearest(double[] position);
+
+	/**
+	 * squared distance from position to its nearest center
+	 * @param position
+	 * @return Double.MAX_VALUE if there is no center
+	 */
+	double nearestSquaredDistance(double[] position);
+
+	/**
+	 * get number of centers
+	 * @return
+	 */
+	int size();
+
+	/**
+	 * remove all centers
+	 */
+	void clear();
+}
@@ -0,0 +1,142 @@
+package edu.iastate.liberty;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+import edu.iastate.datasketches.clustering.Distances;
+
+/**
+ * Centers sorted by their distance (norm) to a reference point, the first
+ * center added. By the triangle inequality a center c cannot be nearer to
+ * q than |norm(q) - norm(c)|, so the search starts at the centers whose
+ * norm is closest to norm(q) and walks outwards in both directions until
+ * that bound exceeds the best distance found. On clustered streams only a
+ * small band of the centers is compared with each query. Adding a center
+ * shifts the sorted arrays, which is cheap next to the searches since
+ * facilities are opened for only a small fraction of the points.
+ */
+public class NormPrunedIndex implements NearestCenterIndex {
+
+	private int dimension;
+
+	private int size;
+
+	// reference point the norms are measured from
+	private double[] reference;
+
+	// norms in ascending order
+	private double[] norms = new double[16];
+
+	// coordinates, row-major in the same order as norms
+	private double[] coords = new double[0];
+
+	// insertion number of each center, in the same order as norms
+	private int[] ids = new int[16];
+
+	// squared distance found by the last search
+	private double lastDistance;
+
+	@Override
+	public void add(double[] position) {
+		if (size == 0) {
+			dimension = position.length;
+			reference = Arrays.copyOf(position, dimension);
+			coords = new double[dimension * norms.length];
+		}
+		else if (position.length != dimension) {
+			throw new DimensionMismatchException(position.length, dimension);
+		}
+		if (size == norms.length) {
+			int capacity = size + (size >> 1);
+			norms = Arrays.copyOf(norms, capacity);
+			ids = Arrays.copyOf(ids, capacity);
+			coords = Arrays.copyOf(coords, capacity * dimension);
+		}
+		double norm = norm(position);
+		int pos = insertionPoint(norm);
+		System.arraycopy(norms, pos, norms, pos + 1, size - pos);
+		System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+		System.arraycopy(coords, pos * dimension, coords, (pos + 1) * dimension, (size - pos) * dimension);
+		norms[pos] = norm;
+		ids[pos] = size;
+		System.arraycopy(position, 0, coords, pos * dimension, dimension);
+		size++;
+	}
+
+	@Override
+	public int nearest(double[] position) {
+		if (size == 0) {
+			lastDistance = Double.MAX_VALUE;
+			return -1;
+		}
+		if (position.length != dimension) {
+			throw new DimensionMismatchException(position.length, dimension);
+		}
+		double norm = norm(position);
+		int hi = insertionPoint(norm);
+		int lo = hi - 1;
+		double best = Double.MAX_VALUE;
+		int nearest = -1;
+		while (lo >= 0 || hi < size) {
+			// visit the side whose norm is closer to the query
+			int c;
+			if (hi >= size || (lo >= 0 && norm - norms[lo] <= norms[hi] - norm)) {
+				c = lo--;
+			}
+			else {
+				c = hi++;
+			}
+			double gap = norm - norms[c];
+			if (gap * gap >= best) {
+				// every remaining center on both sides is at least as far
+				break;
+			}
+			double dist = Distances.squared(position, 0, coords, c * dimension, dimension);
+			if (dist < best) {
+				best = dist;
+				nearest = c;
+			}
+		}
+		lastDistance = best;
+		return ids[nearest];
+	}
+
+	@Override
+	public double nearestSquaredDistance(double[] position) {
+		nearest(position);
+		return lastDistance;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+	}
+
+	private double norm(double[] position) {
+		return Math.sqrt(Distances.squared(position, reference));
+	}
+
+	/**
+	 * first position whose norm is greater than norm
+	 */
+	private int insertionPoint(double norm) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (norms[mid] <= norm) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+}
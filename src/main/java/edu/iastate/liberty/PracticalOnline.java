@@ -1,126 +1,145 @@
-
-package edu.iastate.liberty;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Random;
-
-import edu.iastate.datasketches.clustering.Point;
-
-public class PracticalOnline {
-	
-	private double k;
-	
-	private int n;
-	
-	private double q_r;
-	
-	private double f_r;
-	
-	private List<Point> centers;
-	
-	private Random randSeed;
-	
-	/**
-	 * initialize parameters
-	 * @param k number of centers
-	 */
-	public PracticalOnline(int k_target) {
-		n = 0;
-		q_r = 0;
-		f_r = 0;
-		
-		// based on the paper, k is set "heurisitc (entirely ad-hoc)"
-		k = Math.max((k_target - 15.0) / 5.0, 0);
-		centers = new ArrayList<Point>();
-		randSeed = new Random();
-	}
-	
-	/** 
-	 * upon receiving each point from the stream,
-	 * note that the first (k+10) points we receive them anyway,
-	 * and use them to initiate w and f_r
-	 * @param p
-	 */
-	public void cluster(Point p) {
-		if (n <= k + 10) {
-			// check whether same as previous centers (duplicates)
-			if (checkDuplicate(centers, p)) {
-				return;
-			}
-			
-			// not duplicate, add to the centers
-			centers.add(p);
-			n++;
-			
-			// initialize w and f_r
-			if (n > k + 10) {
-				// find 10 smallest squared distances of points 
-				// in C (centers) to their closest neighbor
-				PriorityQueue<Double> pq = new PriorityQueue<>();
-				for (int i=0; i<centers.size(); i++) {
-					Point c = centers.get(i);
-					
-					double minDist = Double.MAX_VALUE;
-					// for each point, compute distance to its
-					// closest neighbor
-					for (int j=0; j<centers.size(); j++) {
-						if (j != i) {
-							minDist = Math.min(minDist, c.euclidDistTo(centers.get(j)));
-						}
-					}
-					pq.offer(minDist);
-				}
-				// poll out the first 10 smallest distance
-				// sum of squared distances
-				double sum = 0;
-				for (int i=0; i<10; i++) {
-					double d = pq.poll();
-					sum += d * d;
-				}
-				f_r = sum / 2;
-			}
-		}
-		else {
-			// find nearest center in centers
-			double minDist = Double.MAX_VALUE;
-			for (Point c : centers) {
-				minDist = Math.min(minDist, p.euclidDistTo(c));
-			}
-			double prob = Math.min(minDist * minDist / f_r, 1);
-			if (randSeed.nextDouble() < prob) {
-				// add the point p to centers
-				centers.add(p);
-				q_r++;
-			}
-			
-			// adjust the probability to assign new facility
-			if (q_r >= k) {
-				q_r = 0;
-				f_r *= 10;
-			}
-		}
-	}
-	
-	/**
-	 * check if p duplicates with points in center
-	 * @param center
-	 * @param p
-	 * @return
-	 */
-	private boolean checkDuplicate(List<Point> centers, Point p) {
-		for (Point c : centers) {
-			if (c.euclidDistTo(p) < 1e-8) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	public List<Point> getCenters() {
-		return centers;
-	}
-
-}
-
+
+package edu.iastate.liberty;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import edu.iastate.datasketches.clustering.Point;
+
+public class PracticalOnline {
+	
+	private double k;
+	
+	private int n;
+	
+	private double q_r;
+	
+	private double f_r;
+	
+	private List<Point> centers;
+	
+	// opened facilities, centers is their live list
+	private FacilitySet facilities;
+	
+	private Random randSeed;
+	
+	/**
+	 * initialize parameters
+	 * @param k number of centers
+	 */
+	public PracticalOnline(int k_target) {
+		this(k_target, new NormPrunedIndex());
+	}
+	
+	/**
+	 * initialize parameters
+	 * @param k number of centers
+	 * @param index nearest neighbor search over the opened facilities
+	 */
+	public PracticalOnline(int k_target, NearestCenterIndex index) {
+		this(k_target, index, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * initialize parameters
+	 * @param k number of centers
+	 * @param index nearest neighbor search over the opened facilities
+	 * @param maxFacilities facilities kept before they are compacted into
+	 *        maxFacilities/2 weighted representatives, Integer.MAX_VALUE for unbounded
+	 */
+	public PracticalOnline(int k_target, NearestCenterIndex index, int maxFacilities) {
+		n = 0;
+		q_r = 0;
+		f_r = 0;
+		
+		// based on the paper, k is set "heurisitc (entirely ad-hoc)"
+		k = Math.max((k_target - 15.0) / 5.0, 0);
+		randSeed = new Random();
+		facilities = new FacilitySet(index, maxFacilities, Math.max(2 * k_target, (int) k + 11), randSeed);
+		centers = facilities.getFacilities();
+	}
+	
+	/** 
+	 * upon receiving each point from the stream,
+	 * note that the first (k+10) points we receive them anyway,
+	 * and use them to initiate w and f_r
+	 * @param p
+	 */
+	public void cluster(Point p) {
+		if (n <= k + 10) {
+			// check whether same as previous centers (duplicates)
+			if (checkDuplicate(centers, p)) {
+				facilities.assignToNearest(p);
+				return;
+			}
+			
+			// not duplicate, add to the centers
+			facilities.open(p);
+			n++;
+			
+			// initialize w and f_r
+			if (n > k + 10) {
+				// find 10 smallest squared distances of points 
+				// in C (centers) to their closest neighbor
+				PriorityQueue<Double> pq = new PriorityQueue<>();
+				for (int i=0; i<centers.size(); i++) {
+					Point c = centers.get(i);
+					
+					double minDistSquared = Double.MAX_VALUE;
+					// for each point, compute squared distance to its
+					// closest neighbor
+					for (int j=0; j<centers.size(); j++) {
+						if (j != i) {
+							minDistSquared = Math.min(minDistSquared, c.squaredDistTo(centers.get(j)));
+						}
+					}
+					pq.offer(minDistSquared);
+				}
+				// poll out the first 10 smallest distance
+				// sum of squared distances
+				double sum = 0;
+				for (int i=0; i<10; i++) {
+					sum += pq.poll();
+				}
+				f_r = sum / 2;
+			}
+		}
+		else {
+			// find nearest center in centers
+			double minDistSquared = facilities.nearestSquaredDistance(p);
+			double prob = Math.min(minDistSquared / f_r, 1);
+			if (randSeed.nextDouble() < prob) {
+				// add the point p to centers
+				facilities.open(p);
+				q_r++;
+			}
+			else {
+				// the nearest facility serves p
+				facilities.assignToNearest(p);
+			}
+			
+			// adjust the probability to assign new facility
+			if (q_r >= k) {
+				q_r = 0;
+				f_r *= 10;
+			}
+		}
+	}
+	
+	/**
+	 * check if p duplicates with points in center
+	 * @param center
+	 * @param p
+	 * @return
+	 */
+	private boolean checkDuplicate(List<Point> centers, Point p) {
+		return facilities.nearestSquaredDistance(p) < 1e-16;
+	}
+
+	public List<Point> getCenters() {
+		return centers;
+	}
+
+}
+
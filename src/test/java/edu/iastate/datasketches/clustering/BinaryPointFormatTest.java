@@ -0,0 +1,166 @@
+package edu.iastate.datasketches.clustering;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Random;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+import junit.framework.TestCase;
+
+/**
+ * points written by BinaryPointWriter are read back by BinaryPointSource
+ */
+public class BinaryPointFormatTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws IOException {
+		file = File.createTempFile("points", ".bin");
+	}
+
+	@Override
+	protected void tearDown() {
+		file.delete();
+	}
+
+	public void testFloat64RoundTrip() throws IOException {
+		PointBlock points = randomPoints(10007, 5, 1);
+		try (BinaryPointWriter writer = new BinaryPointWriter(file, 5, false, false)) {
+			writer.write(points);
+		}
+		try (BinaryPointSource source = read()) {
+			assertEquals(5, source.dimension());
+			assertEquals(10007, source.size());
+			assertFalse(source.isFloat32());
+			assertFalse(source.isWeighted());
+			PointBlock all = readAll(source, 1000);
+			for (int i=0; i<points.size(); i++) {
+				for (int j=0; j<5; j++) {
+					assertEquals(points.coordinate(i, j), all.coordinate(i, j), 0);
+				}
+				assertEquals(1, all.weight(i), 0);
+			}
+			
+			// a second pass reads the same points
+			source.rewind();
+			assertEquals(points.coordinate(0, 0), readAll(source, 333).coordinate(0, 0), 0);
+		}
+	}
+
+	public void testFloat32WeightedRoundTrip() throws IOException {
+		PointBlock points = randomPoints(5003, 3, 2);
+		try (BinaryPointWriter writer = new BinaryPointWriter(file, 3, true, true)) {
+			for (int i=0; i<points.size(); i++) {
+				writer.write(points.coords(), i * 3, points.weight(i));
+			}
+		}
+		try (BinaryPointSource source = read()) {
+			assertTrue(source.isFloat32());
+			assertTrue(source.isWeighted());
+			PointBlock all = readAll(source, 1024);
+			assertEquals(points.size(), all.size());
+			for (int i=0; i<points.size(); i++) {
+				for (int j=0; j<3; j++) {
+					assertEquals((float) points.coordinate(i, j), all.coordinate(i, j), 0);
+				}
+				assertEquals((float) points.weight(i), all.weight(i), 0);
+			}
+			assertEquals((float) points.coordinate(17, 2), source.coordinates(17, 1).getFloat(8), 0);
+			assertEquals((float) points.weight(17), source.weights(17, 1).getFloat(0), 0);
+		}
+	}
+
+	public void testRowLargerThanBuffer() throws IOException {
+		// one point is larger than the 1 MB write buffer
+		int d = 200000;
+		PointBlock points = randomPoints(3, d, 3);
+		try (BinaryPointWriter writer = new BinaryPointWriter(file, d, false, true)) {
+			writer.write(points);
+		}
+		try (BinaryPointSource source = read()) {
+			PointBlock all = readAll(source, 2);
+			assertEquals(3, all.size());
+			for (int i=0; i<3; i++) {
+				assertEquals(points.coordinate(i, d - 1), all.coordinate(i, d - 1), 0);
+				assertEquals(points.weight(i), all.weight(i), 0);
+			}
+		}
+	}
+
+	public void testFileIsLittleEndian() throws IOException {
+		PointBlock points = randomPoints(7, 3, 4);
+		try (BinaryPointWriter writer = new BinaryPointWriter(file, 3, false, true)) {
+			writer.write(points);
+		}
+		// the same bytes on any platform
+		ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(0x4b, bytes.get(0));
+		assertEquals(BinaryPointFormat.MAGIC, bytes.getInt(BinaryPointFormat.MAGIC_INT));
+		assertEquals(3, bytes.getInt(BinaryPointFormat.DIMENSION_INT));
+		assertEquals(7, bytes.getLong(BinaryPointFormat.COUNT_LONG));
+		assertEquals(points.coordinate(2, 1), bytes.getDouble(BinaryPointFormat.HEADER_BYTES + (2 * 3 + 1) * 8), 0);
+		assertEquals(points.weight(6), bytes.getDouble(BinaryPointFormat.HEADER_BYTES + (7 * 3 + 6) * 8), 0);
+	}
+
+	public void testConvertCsv() throws IOException {
+		File csv = File.createTempFile("points", ".csv");
+		try {
+			try (PrintWriter out = new PrintWriter(csv, "US-ASCII")) {
+				out.print("1.5,2\n-3,4e2\n");
+			}
+			assertEquals(2, FileParser.convert(csv, file, false));
+			try (BinaryPointSource source = read()) {
+				PointBlock all = readAll(source, 10);
+				assertEquals(400, all.coordinate(1, 1), 0);
+				assertEquals(-3, all.coordinate(1, 0), 0);
+			}
+		}
+		finally {
+			csv.delete();
+		}
+	}
+
+	public void testOtherFileIsRejected() throws IOException {
+		Files.write(file.toPath(), new byte[64]);
+		try {
+			read();
+			fail();
+		}
+		catch (SketchesArgumentException e) {
+			// expected
+		}
+	}
+
+	private BinaryPointSource read() throws IOException {
+		return new BinaryPointSource(Memory.wrap(Files.readAllBytes(file.toPath())));
+	}
+
+	private static PointBlock readAll(BinaryPointSource source, int batchSize) throws IOException {
+		PointBlock all = new PointBlock(source.dimension(), (int) source.size());
+		PointBlock batch = new PointBlock(source.dimension(), batchSize);
+		while (source.nextBatch(batch, batchSize) > 0) {
+			all.addAll(batch);
+		}
+		return all;
+	}
+
+	private static PointBlock randomPoints(int n, int d, long seed) {
+		Random random = new Random(seed);
+		PointBlock points = new PointBlock(d, n);
+		double[] position = new double[d];
+		for (int i=0; i<n; i++) {
+			for (int j=0; j<d; j++) {
+				position[j] = random.nextGaussian() * 100;
+			}
+			points.add(position, random.nextDouble() * 10);
+		}
+		return points;
+	}
+}
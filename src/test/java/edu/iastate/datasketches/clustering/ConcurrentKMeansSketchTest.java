@@ -0,0 +1,52 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * points fed from several threads all end up in the merged sketch
+ */
+public class ConcurrentKMeansSketchTest extends SketchTestCase {
+
+	private static final int THREADS = 4;
+
+	private static final int POINTS_PER_THREAD = 5000;
+
+	public void testMergedSketchHoldsAllPoints() throws Exception {
+		final ConcurrentKMeansSketch sketch = new ConcurrentKMeansSketch(THREADS, 5, 40, 3, 3, 2,
+				SeedingStrategy.FAST_SEEDING);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t=0; t<THREADS; t++) {
+				final PointBlock data = SyntheticData.gaussianMixture(POINTS_PER_THREAD, 3, 5, 10, t);
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						for (int i=0; i<data.size(); i+=100) {
+							sketch.clusterBatch(Arrays.copyOfRange(data.coords(), i * 3, (i + 100) * 3), 3, null);
+						}
+						return null;
+					}
+				}));
+			}
+			// queries while the threads are feeding see at most all points
+			for (int i=0; i<10; i++) {
+				assertTrue(totalWeight(sketch.getMergedSketch()) <= THREADS * POINTS_PER_THREAD);
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		assertEquals(THREADS * POINTS_PER_THREAD, totalWeight(sketch.getMergedSketch()), 1e-6);
+		assertEquals(5, sketch.getCenters().size());
+	}
+}
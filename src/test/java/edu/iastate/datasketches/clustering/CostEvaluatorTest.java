@@ -0,0 +1,122 @@
+package edu.iastate.datasketches.clustering;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.math3.exception.NumberIsTooSmallException;
+
+import junit.framework.TestCase;
+
+/**
+ * CostEvaluator against a loop over all centers, across several chunks
+ * (more than 8192 points) and center tiles (k*d more than 2048 values)
+ */
+public class CostEvaluatorTest extends TestCase {
+
+	private static final int N = 20011;
+
+	private static final int D = 8;
+
+	private static final int K = 300;
+
+	private PointBlock points;
+
+	private PointBlock centers;
+
+	@Override
+	protected void setUp() {
+		points = SyntheticData.gaussianMixture(N, D, 20, 10, 1);
+		for (int i=0; i<N; i++) {
+			points.setWeight(i, 1 + i % 5);
+		}
+		centers = SyntheticData.gaussianMixture(K, D, 20, 10, 2);
+	}
+
+	public void testAssignMatchesBruteForce() {
+		int[] expected = new int[N];
+		double expectedCost = bruteForce(points, expected);
+		int[] labels = new int[N];
+		double cost = new CostEvaluator(centers).assign(points, labels);
+		assertTrue(Arrays.equals(expected, labels));
+		assertEquals(expectedCost, cost, 1e-9 * expectedCost);
+		assertEquals(cost, new CostEvaluator(centers).cost(points), 1e-9 * cost);
+	}
+
+	public void testPointSourceMatchesBruteForce() throws IOException {
+		int[] expected = new int[N];
+		double expectedCost = bruteForce(points, expected);
+		int[] labels = new int[N];
+		double cost = new CostEvaluator(centers).assign(source(points), 3000, labels);
+		assertTrue(Arrays.equals(expected, labels));
+		assertEquals(expectedCost, cost, 1e-9 * expectedCost);
+		assertEquals(cost, new CostEvaluator(centers).cost(source(points), 3000), 1e-9 * cost);
+	}
+
+	public void testShortLabelsAreRejected() throws IOException {
+		CostEvaluator evaluator = new CostEvaluator(centers);
+		try {
+			evaluator.assign(points, new int[N - 1]);
+			fail();
+		}
+		catch (NumberIsTooSmallException e) {
+			// expected
+		}
+		try {
+			evaluator.assign(source(points), 3000, new int[N - 1]);
+			fail();
+		}
+		catch (NumberIsTooSmallException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * nearest center of every point by comparing it with all centers,
+	 * ties go to the lowest index
+	 * @return weighted cost
+	 */
+	private double bruteForce(PointBlock points, int[] labels) {
+		double cost = 0;
+		for (int i=0; i<points.size(); i++) {
+			double min = Double.MAX_VALUE;
+			for (int c=0; c<centers.size(); c++) {
+				double dist = Distances.squared(points.coords(), i * D, centers.coords(), c * D, D);
+				if (dist < min) {
+					min = dist;
+					labels[i] = c;
+				}
+			}
+			cost += min * points.weight(i);
+		}
+		return cost;
+	}
+
+	/**
+	 * the points of a block as a source
+	 */
+	private static PointSource source(final PointBlock points) {
+		return new PointSource() {
+			private int next = 0;
+
+			@Override
+			public int dimension() {
+				return points.dimension();
+			}
+
+			@Override
+			public int nextBatch(PointBlock batch, int maxPoints) {
+				batch.clear();
+				int count = Math.min(maxPoints, points.size() - next);
+				for (int i=0; i<count; i++) {
+					batch.add(points, next + i);
+				}
+				next += count;
+				return count;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+}
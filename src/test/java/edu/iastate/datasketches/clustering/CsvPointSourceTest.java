@@ -0,0 +1,127 @@
+package edu.iastate.datasketches.clustering;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * the byte parser of CsvPointSource gives the same doubles as Double.parseDouble
+ */
+public class CsvPointSourceTest extends TestCase {
+
+	private static final int D = 3;
+
+	private File file;
+
+	@Override
+	protected void setUp() throws IOException {
+		file = File.createTempFile("points", ".csv");
+	}
+
+	@Override
+	protected void tearDown() {
+		file.delete();
+	}
+
+	public void testRandomValuesMatchParseDouble() throws IOException {
+		Random random = new Random(1);
+		List<String> values = new ArrayList<>();
+		for (int i=0; i<30000; i++) {
+			double x = random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+			switch (i % 6) {
+			case 0:
+				values.add(Double.toString(x));
+				break;
+			case 1:
+				values.add(String.format(Locale.ROOT, "%.6f", x));
+				break;
+			case 2:
+				values.add(String.format(Locale.ROOT, "%.12e", x));
+				break;
+			case 3:
+				values.add(Long.toString(random.nextLong() >> random.nextInt(64)));
+				break;
+			case 4:
+				values.add(String.format(Locale.ROOT, "%.3E", x));
+				break;
+			default:
+				values.add(String.format(Locale.ROOT, "%.25f", x));
+			}
+		}
+		checkValues(values);
+	}
+
+	public void testSpecialValuesMatchParseDouble() throws IOException {
+		String[] special = {
+			"0", "-0", "+0.0", "1", "-1", "+2.5", " 3.25 ", "\t-4\t", "0.1", "0.3", ".5", "5.", "1e22", "1e23",
+			"1e-22", "1e-23", "9007199254740993", "123456789012345678", "1234567890123456789012", 
+			"0.000000000000000000000000001", "4.9e-324", "1.7976931348623157e308", "1e400", "1e-400",
+			"NaN", "-Infinity", "Infinity", "2.2250738585072014E-308", "1.0E+10", "123.456e-7"
+		};
+		List<String> values = new ArrayList<>();
+		for (String value : special) {
+			values.add(value);
+		}
+		while (values.size() % D != 0) {
+			values.add("7");
+		}
+		checkValues(values);
+	}
+
+	public void testBlankLinesAndCrLf() throws IOException {
+		writeFile("\n1,2,3\r\n\r\n  \n4,5,6\r\n7,8,9");
+		try (CsvPointSource source = new CsvPointSource(file)) {
+			assertEquals(D, source.dimension());
+			PointBlock batch = new PointBlock(D, 10);
+			assertEquals(3, source.nextBatch(batch, 10));
+			for (int i=0; i<9; i++) {
+				assertEquals(i + 1, batch.coordinate(i / D, i % D), 0);
+			}
+			assertEquals(0, source.nextBatch(batch, 10));
+		}
+	}
+
+	/**
+	 * write the values D per line and compare the parsed points bit by bit
+	 */
+	private void checkValues(List<String> values) throws IOException {
+		try (PrintWriter out = new PrintWriter(file, "US-ASCII")) {
+			for (int i=0; i<values.size(); i+=D) {
+				out.print(values.get(i));
+				for (int j=1; j<D; j++) {
+					out.print(',');
+					out.print(values.get(i + j));
+				}
+				out.print('\n');
+			}
+		}
+		try (CsvPointSource source = new CsvPointSource(file)) {
+			assertEquals(D, source.dimension());
+			PointBlock batch = new PointBlock(D, 1000);
+			int read = 0;
+			int count;
+			while ((count = source.nextBatch(batch, 1000)) > 0) {
+				for (int i=0; i<count*D; i++) {
+					String value = values.get(read * D + i);
+					double expected = Double.parseDouble(value.trim());
+					double actual = batch.coordinate(i / D, i % D);
+					assertEquals(value, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+				}
+				read += count;
+			}
+			assertEquals(values.size() / D, read);
+		}
+	}
+
+	private void writeFile(String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+	}
+}
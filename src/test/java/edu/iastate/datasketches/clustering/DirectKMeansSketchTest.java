@@ -0,0 +1,109 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.Arrays;
+
+import com.yahoo.memory.WritableMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SketchesStateException;
+
+/**
+ * DirectKMeansSketch against the heap sketch, reattaching and running out of levels
+ */
+public class DirectKMeansSketchTest extends SketchTestCase {
+
+	public void testMatchesHeapSketch() {
+		PointBlock data = SyntheticData.gaussianMixture(5000, D, K, 10, 1);
+		KMeansSketch heap = new KMeansSketch(K, M, R, 3, 2);
+		DirectKMeansSketch direct = newSketch(10);
+		for (int i=0; i<data.size(); i++) {
+			heap.cluster(data.getPoint(i));
+			direct.cluster(data.getPoint(i));
+		}
+		KMeansSketch copy = direct.toHeap();
+		assertEquals(levelCounts(heap), levelCounts(copy));
+		assertEquals(heap.getState().bucket_0.coresetSize(), copy.getState().bucket_0.coresetSize());
+		assertEquals(data.totalWeight(), totalWeight(copy), 1e-6);
+		assertEquals(K, direct.getCenters().size());
+	}
+
+	public void testClusterBatchMatchesCluster() {
+		PointBlock data = SyntheticData.gaussianMixture(3000, D, K, 10, 2);
+		DirectKMeansSketch single = newSketch(10);
+		DirectKMeansSketch batch = newSketch(10);
+		for (int i=0; i<data.size(); i++) {
+			single.cluster(data.getPoint(i));
+		}
+		batch.clusterBatch(Arrays.copyOf(data.coords(), data.size() * D), null);
+		assertEquals(levelCounts(single.toHeap()), levelCounts(batch.toHeap()));
+		assertEquals(data.totalWeight(), totalWeight(batch.toHeap()), 1e-6);
+	}
+
+	public void testWritableWrapContinuesFromMemory() {
+		WritableMemory mem = WritableMemory.allocate((int) DirectKMeansSketch.getRequiredBytes(M, R, D, 10));
+		DirectKMeansSketch direct = new DirectKMeansSketch(K, M, R, 3, 2, SeedingStrategy.FAST_SEEDING, D, mem);
+		PointBlock data = SyntheticData.gaussianMixture(2000, D, K, 10, 3);
+		for (int i=0; i<1234; i++) {
+			direct.cluster(data.getPoint(i));
+		}
+		DirectKMeansSketch reattached = DirectKMeansSketch.writableWrap(mem);
+		assertTrue(Arrays.equals(direct.toByteArray(), reattached.toByteArray()));
+		for (int i=1234; i<data.size(); i++) {
+			reattached.cluster(data.getPoint(i));
+		}
+		assertEquals(data.totalWeight(), totalWeight(reattached.toHeap()), 1e-6);
+	}
+
+	public void testWritableWrapRejectsOtherMemory() {
+		try {
+			DirectKMeansSketch.writableWrap(WritableMemory.wrap(new KMeansSketch(K, M, R, 3, 2).toByteArray()));
+			fail();
+		}
+		catch (SketchesArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testOutOfLevelsKeepsData() {
+		DirectKMeansSketch direct = newSketch(2);
+		PointBlock data = SyntheticData.gaussianMixture(10000, D, K, 10, 4);
+		int fed = 0;
+		try {
+			for (; fed<data.size(); fed++) {
+				direct.cluster(data.getPoint(fed));
+			}
+			fail("expected the memory to run out of levels");
+		}
+		catch (SketchesStateException e) {
+			// the point that filled bucket 0 is kept
+			fed++;
+		}
+		assertEquals(fed, totalWeight(direct.toHeap()), 1e-6);
+		assertEquals(K, direct.getCenters().size());
+
+		// still full, nothing changes
+		try {
+			direct.cluster(data.getPoint(fed));
+			fail();
+		}
+		catch (SketchesStateException e) {
+			// expected
+		}
+		assertEquals(fed, totalWeight(direct.toHeap()), 1e-6);
+	}
+
+	public void testTooLargeUnionIsRejected() {
+		try {
+			new DirectKMeansSketch(K, 1 << 20, 1 << 10, 3, 2, SeedingStrategy.FAST_SEEDING, 1 << 10,
+					WritableMemory.allocate(1024));
+			fail();
+		}
+		catch (SketchesArgumentException e) {
+			assertTrue(e.getMessage().startsWith("Union"));
+		}
+	}
+
+	private static DirectKMeansSketch newSketch(int maxLevels) {
+		WritableMemory mem = WritableMemory.allocate((int) DirectKMeansSketch.getRequiredBytes(M, R, D, maxLevels));
+		return new DirectKMeansSketch(K, M, R, 3, 2, SeedingStrategy.FAST_SEEDING, D, mem);
+	}
+}
@@ -0,0 +1,44 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * distance kernels against the obvious loops
+ */
+public class DistancesTest extends TestCase {
+
+	public void testSquaredMatchesSimpleLoop() {
+		Random random = new Random(1);
+		for (int d=1; d<12; d++) {
+			double[] a = new double[d + 3];
+			double[] b = new double[d];
+			for (int j=0; j<a.length; j++) {
+				a[j] = random.nextGaussian();
+			}
+			double expected = 0;
+			for (int j=0; j<d; j++) {
+				b[j] = random.nextGaussian();
+				expected += (a[j + 3] - b[j]) * (a[j + 3] - b[j]);
+			}
+			assertEquals(expected, Distances.squared(a, 3, b, 0, d), 1e-12);
+		}
+	}
+
+	public void testNearestAndMinSquared() {
+		PointBlock centers = new PointBlock(2, 4);
+		centers.add(new double[] {0, 0}, 1);
+		centers.add(new double[] {10, 0}, 1);
+		centers.add(new double[] {0, 10}, 1);
+		centers.add(new double[] {10, 0}, 1);
+		double[] q = {9, 1};
+		assertEquals(1, Distances.nearest(q, 0, centers));
+		assertEquals(2, Distances.minSquared(q, 0, centers), 0);
+		// ties go to the lowest index of the range
+		assertEquals(3, Distances.nearest(q, 0, centers, 2, 4));
+		assertEquals(-1, Distances.nearest(q, 0, centers, 2, 2));
+		assertEquals(-1, Distances.nearest(q, 0, new PointBlock(2, 1)));
+		assertEquals(Double.MAX_VALUE, Distances.minSquared(q, 0, new PointBlock(2, 1)), 0);
+	}
+}
@@ -0,0 +1,95 @@
+package edu.iastate.datasketches.clustering;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * k-means|| seeding: the same centers for a fixed seed whatever the size of
+ * the common pool, and the fallback when there are too few candidates
+ */
+public class KMeansParallelSeedingTest extends TestCase {
+
+	private static final int M = 20;
+
+	public void testSameCentersOnAnyPoolSize() throws Exception {
+		String expected = seedCenters();
+		// the size of the common pool is fixed per JVM
+		for (int parallelism : new int[] {1, 3}) {
+			assertEquals("parallelism " + parallelism, expected, runWithParallelism(parallelism));
+		}
+	}
+
+	public void testTooFewCandidatesFallsBack() {
+		// a single round expecting one candidate cannot give m candidates
+		PointBlock points = SyntheticData.gaussianMixture(50, 3, 5, 10, 3);
+		for (int i=0; i<points.size(); i++) {
+			points.setWeight(i, 1 + i % 4);
+		}
+		PointBlock centers = KMeansPlusPlus.kMeansParallelSeeding(points, 30, new Random(1), 1, 1.0 / 30);
+		assertEquals(30, centers.size());
+		assertEquals(points.totalWeight(), centers.totalWeight(), 1e-9);
+	}
+
+	public void testCentersKeepWeight() {
+		PointBlock points = SyntheticData.gaussianMixture(20000, 4, 10, 10, 4);
+		PointBlock centers = KMeansPlusPlus.kMeansParallelSeeding(points, M, new Random(2),
+				KMeansPlusPlus.DEFAULT_KMEANS_PARALLEL_ROUNDS, KMeansPlusPlus.DEFAULT_OVERSAMPLING_FACTOR);
+		assertEquals(M, centers.size());
+		assertEquals(points.totalWeight(), centers.totalWeight(), 1e-6);
+	}
+
+	/**
+	 * k-means|| on several chunks of points with a fixed seed
+	 * @return the exact bits of the centers and their weights
+	 */
+	private static String seedCenters() {
+		PointBlock points = SyntheticData.gaussianMixture(20000, 4, 10, 10, 5);
+		PointBlock centers = KMeansPlusPlus.kMeansParallelSeeding(points, M, new Random(42),
+				KMeansPlusPlus.DEFAULT_KMEANS_PARALLEL_ROUNDS, KMeansPlusPlus.DEFAULT_OVERSAMPLING_FACTOR);
+		StringBuilder sb = new StringBuilder();
+		for (int c=0; c<centers.size(); c++) {
+			for (int j=0; j<centers.dimension(); j++) {
+				sb.append(Double.toHexString(centers.coordinate(c, j))).append(' ');
+			}
+			sb.append(Double.toHexString(centers.weight(c))).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * run {@link #seedCenters()} in a new JVM with the given common pool size
+	 */
+	private static String runWithParallelism(int parallelism) throws IOException, InterruptedException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java,
+				"-Djava.util.concurrent.ForkJoinPool.common.parallelism=" + parallelism,
+				"-cp", System.getProperty("java.class.path"), Child.class.getName());
+		builder.redirectErrorStream(true);
+		Process process = builder.start();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = process.getInputStream()) {
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				out.write(buffer, 0, n);
+			}
+		}
+		assertEquals(0, process.waitFor());
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * prints the centers of {@link #seedCenters()}
+	 */
+	public static final class Child {
+		public static void main(String[] args) {
+			System.out.print(seedCenters());
+		}
+	}
+}
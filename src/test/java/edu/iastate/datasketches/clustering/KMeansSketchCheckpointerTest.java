@@ -0,0 +1,113 @@
+package edu.iastate.datasketches.clustering;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * checkpoints restore the same sketch and only rewrite changed levels
+ */
+public class KMeansSketchCheckpointerTest extends SketchTestCase {
+
+	private File directory;
+
+	@Override
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("checkpoint").toFile();
+	}
+
+	@Override
+	protected void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	public void testRestoreEqualsCheckpoint() throws IOException {
+		KMeansSketch sketch = new KMeansSketch(K, M, R, 3, 2);
+		PointBlock data = SyntheticData.gaussianMixture(5017, D, K, 10, 1);
+		sketch.clusterBatch(data);
+		KMeansSketchCheckpointer checkpointer = new KMeansSketchCheckpointer(directory);
+		assertFalse(checkpointer.exists());
+		checkpointer.checkpoint(sketch);
+		assertTrue(checkpointer.exists());
+		
+		KMeansSketch restored = new KMeansSketchCheckpointer(directory).restore();
+		assertTrue(Arrays.equals(sketch.toByteArray(), restored.toByteArray()));
+		assertFalse(new File(directory, "manifest.tmp").exists());
+	}
+
+	public void testUnchangedLevelsAreNotRewritten() throws IOException {
+		KMeansSketch sketch = new KMeansSketch(K, M, R, 3, 2);
+		PointBlock data = SyntheticData.gaussianMixture(10000, D, K, 10, 2);
+		// levels 0 to 2 hold r-1 buckets each, bucket 0 is empty
+		int n = M * (R * R * R - 1);
+		sketch.clusterBatch(new PointBlock(D, n, data.coords(), data.weights()));
+		KMeansSketchCheckpointer checkpointer = new KMeansSketchCheckpointer(directory);
+		checkpointer.checkpoint(sketch);
+		Set<String> first = levelFiles();
+		assertEquals(3, first.size());
+		
+		// points that stay in bucket 0 change no level
+		for (int i=n; i<n+M-1; i++) {
+			sketch.cluster(data.getPoint(i));
+		}
+		checkpointer.checkpoint(sketch);
+		assertEquals(first, levelFiles());
+		
+		// the next full bucket 0 empties levels 0 to 2 into a new level 3,
+		// then one more bucket goes to level 0: every level file is new
+		sketch.cluster(data.getPoint(n + M - 1));
+		for (int i=n+M; i<n+2*M; i++) {
+			sketch.cluster(data.getPoint(i));
+		}
+		checkpointer.checkpoint(sketch);
+		Set<String> second = levelFiles();
+		assertEquals(2, second.size());
+		for (String name : second) {
+			assertFalse(first.contains(name));
+		}
+		
+		// a carry into level 0 only rewrites level 0
+		for (int i=n+2*M; i<n+3*M; i++) {
+			sketch.cluster(data.getPoint(i));
+		}
+		checkpointer.checkpoint(sketch);
+		Set<String> third = levelFiles();
+		assertEquals(2, third.size());
+		Set<String> kept = new TreeSet<>(second);
+		kept.retainAll(third);
+		assertEquals(1, kept.size());
+		assertTrue(kept.iterator().next().startsWith("level-3-"));
+		
+		assertTrue(Arrays.equals(sketch.toByteArray(), new KMeansSketchCheckpointer(directory).restore().toByteArray()));
+	}
+
+	public void testDirectorySyncIsBestEffort() throws IOException {
+		// a directory that cannot be opened (as on Windows) is not an error
+		assertFalse(KMeansSketchCheckpointer.syncDirectory(new File(directory, "missing").toPath()));
+		// whether this platform can force a directory or not, checkpoints work
+		KMeansSketchCheckpointer.syncDirectory(directory.toPath());
+		KMeansSketch sketch = new KMeansSketch(K, M, R, 3, 2);
+		sketch.clusterBatch(SyntheticData.gaussianMixture(1000, D, K, 10, 3));
+		new KMeansSketchCheckpointer(directory).checkpoint(sketch);
+		assertTrue(Arrays.equals(sketch.toByteArray(), new KMeansSketchCheckpointer(directory).restore().toByteArray()));
+	}
+
+	private Set<String> levelFiles() {
+		Set<String> names = new TreeSet<>();
+		for (File file : directory.listFiles()) {
+			if (file.getName().startsWith("level-")) {
+				names.add(file.getName());
+			}
+		}
+		return names;
+	}
+}
@@ -0,0 +1,86 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * snapshots read by one thread while another one feeds the sketch
+ */
+public class KMeansSketchSnapshotTest extends SketchTestCase {
+
+	private static final int POINTS = 30000;
+
+	public void testSnapshotsWhileIngesting() throws Exception {
+		checkSnapshots(false);
+	}
+
+	public void testSnapshotsWhileIngestingWithAsyncMerge() throws Exception {
+		checkSnapshots(true);
+	}
+
+	private static void checkSnapshots(boolean async) throws Exception {
+		final KMeansSketch sketch = new KMeansSketch(K, M, R, 3, 2);
+		if (async) {
+			sketch.enableAsyncMerge(2);
+		}
+		final PointBlock data = SyntheticData.gaussianMixture(POINTS, D, K, 10, 1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Void> writer = executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int i=0; i<data.size(); i++) {
+						sketch.cluster(data.getPoint(i));
+					}
+					sketch.flush();
+					return null;
+				}
+			});
+			double last = 0;
+			int reads = 0;
+			while (!writer.isDone() || reads == 0) {
+				KMeansSketch.State state = sketch.getState();
+				double weight = snapshotWeight(state);
+				// a snapshot never loses points and never sees more than were fed
+				assertTrue(weight >= last);
+				assertTrue(weight <= POINTS);
+				last = weight;
+				for (List<Bucket> level : state.coresetTree) {
+					assertTrue(level.size() < R);
+					for (Bucket b : level) {
+						assertEquals(M, b.coresetSize());
+					}
+				}
+				if (reads % 50 == 0 && weight >= M) {
+					assertEquals(K, sketch.getCenters().size());
+				}
+				reads++;
+			}
+			writer.get();
+		}
+		finally {
+			executor.shutdown();
+		}
+		assertEquals(POINTS, snapshotWeight(sketch.getState()), 1e-6);
+		assertEquals(POINTS, totalWeight(sketch), 1e-6);
+	}
+
+	/**
+	 * weight of a snapshot, counting only the points of bucket 0 published so far
+	 */
+	private static double snapshotWeight(KMeansSketch.State state) {
+		double weight = state.bucket_0.snapshot().coreset.totalWeight();
+		for (List<Bucket> level : state.coresetTree) {
+			for (Bucket b : level) {
+				weight += b.coreset.totalWeight();
+			}
+		}
+		for (Bucket b : state.pendingBuckets) {
+			weight += b.coreset.totalWeight();
+		}
+		return weight;
+	}
+}
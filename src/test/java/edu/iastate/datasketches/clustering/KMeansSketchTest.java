@@ -0,0 +1,191 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NoDataException;
+import org.apache.commons.math3.exception.NumberIsTooSmallException;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * KMeansSketch ingestion, merging and serialization
+ */
+public class KMeansSketchTest extends SketchTestCase {
+
+	public void testSerializationRoundTrip() {
+		KMeansSketch sketch = newSketch(SyntheticData.gaussianMixture(5017, D, K, 10, 1));
+		byte[] bytes = sketch.toByteArray();
+		KMeansSketch copy = KMeansSketch.heapify(Memory.wrap(bytes));
+		assertTrue(Arrays.equals(bytes, copy.toByteArray()));
+		assertEquals(levelCounts(sketch), levelCounts(copy));
+		assertEquals(5017, totalWeight(copy), 1e-6);
+		assertEquals(K, copy.getK());
+		assertEquals(M, copy.getBucketSize());
+		assertEquals(R, copy.getMergeThreshold());
+		assertEquals(SeedingStrategy.FAST_SEEDING, copy.getSeedingStrategy());
+	}
+
+	public void testHeapifiedSketchKeepsClustering() {
+		PointBlock data = SyntheticData.gaussianMixture(4000, D, K, 10, 2);
+		KMeansSketch sketch = new KMeansSketch(K, M, R, 3, 2);
+		sketch.clusterBatch(new PointBlock(D, 2000, data.coords(), data.weights()));
+		KMeansSketch copy = KMeansSketch.heapify(Memory.wrap(sketch.toByteArray()));
+		for (int i=2000; i<data.size(); i++) {
+			copy.cluster(data.getPoint(i));
+		}
+		assertEquals(4000, totalWeight(copy), 1e-6);
+		assertEquals(K, copy.getCenters().size());
+	}
+
+	public void testEmptySketchRoundTrip() {
+		KMeansSketch sketch = new KMeansSketch(K, M, R, 3, 2);
+		byte[] bytes = sketch.toByteArray();
+		assertTrue(Arrays.equals(bytes, KMeansSketch.heapify(Memory.wrap(bytes)).toByteArray()));
+	}
+
+	public void testCorruptImageIsRejected() {
+		byte[] bytes = newSketch(SyntheticData.gaussianMixture(1000, D, K, 10, 3)).toByteArray();
+		try {
+			KMeansSketch.heapify(Memory.wrap(Arrays.copyOf(bytes, bytes.length - 8)));
+			fail();
+		}
+		catch (SketchesArgumentException e) {
+			// expected
+		}
+		bytes[PreambleUtil.FAMILY_BYTE] = 0;
+		try {
+			KMeansSketch.heapify(Memory.wrap(bytes));
+			fail();
+		}
+		catch (SketchesArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testArrayLengthIsChecked() {
+		assertEquals(100, PreambleUtil.checkArrayLength(100, "Serialized sketch"));
+		try {
+			PreambleUtil.checkArrayLength(1L << 31, "Serialized sketch");
+			fail();
+		}
+		catch (SketchesArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testClusterBatchMatchesCluster() {
+		PointBlock data = SyntheticData.gaussianMixture(3001, D, K, 10, 4);
+		KMeansSketch single = newSketch(data);
+		KMeansSketch rows = new KMeansSketch(K, M, R, 3, 2);
+		rows.clusterBatch(Arrays.copyOf(data.coords(), data.size() * D), D, null);
+		KMeansSketch block = new KMeansSketch(K, M, R, 3, 2);
+		block.clusterBatch(data);
+		assertEquals(levelCounts(single), levelCounts(rows));
+		assertEquals(levelCounts(single), levelCounts(block));
+		assertEquals(3001, totalWeight(rows), 1e-6);
+		assertEquals(3001, totalWeight(block), 1e-6);
+	}
+
+	public void testClusterBatchRejectsBadDimension() {
+		KMeansSketch sketch = new KMeansSketch(K, M, R, 3, 2);
+		try {
+			sketch.clusterBatch(new double[8], 0, null);
+			fail();
+		}
+		catch (NumberIsTooSmallException e) {
+			// expected
+		}
+		try {
+			sketch.clusterBatch(new double[8], 3, null);
+			fail();
+		}
+		catch (DimensionMismatchException e) {
+			// expected
+		}
+	}
+
+	public void testAsyncMergeMatchesSync() {
+		PointBlock data = SyntheticData.gaussianMixture(6007, D, K, 10, 7);
+		KMeansSketch sync = newSketch(data);
+		// one waiting bucket makes cluster() block on the merger (backpressure)
+		for (int maxPending : new int[] {1, 4}) {
+			KMeansSketch async = new KMeansSketch(K, M, R, 3, 2);
+			async.enableAsyncMerge(maxPending);
+			for (int i=0; i<data.size(); i++) {
+				async.cluster(data.getPoint(i));
+				// the waiting buckets are part of the sketch at any time
+				if (i % 500 == 0) {
+					assertEquals(i + 1, totalWeight(async), 1e-6);
+				}
+			}
+			async.flush();
+			assertTrue(async.getState().pendingBuckets.isEmpty());
+			assertEquals(levelCounts(sync), levelCounts(async));
+			assertEquals(6007, totalWeight(async), 1e-6);
+			
+			// back to synchronous merging
+			async.disableAsyncMerge();
+			for (int i=0; i<data.size(); i++) {
+				async.cluster(data.getPoint(i));
+			}
+			assertTrue(async.getState().pendingBuckets.isEmpty());
+			assertEquals(2 * 6007, totalWeight(async), 1e-6);
+		}
+	}
+
+	public void testMergeAllKeepsTotalWeight() {
+		List<KMeansSketch> sketches = new ArrayList<>();
+		double weight = 0;
+		for (int i=0; i<50; i++) {
+			// sizes from empty to several full levels, weights other than 1
+			PointBlock data = SyntheticData.gaussianMixture(1 + i * 97, D, K, 10, i);
+			for (int j=0; j<data.size(); j++) {
+				data.setWeight(j, 0.5 + (j % 3));
+			}
+			KMeansSketch sketch = new KMeansSketch(K, M, R, 3, 2);
+			if (i > 0) {
+				sketch.clusterBatch(data);
+				weight += data.totalWeight();
+			}
+			sketches.add(sketch);
+		}
+		KMeansSketch merged = KMeansSketch.mergeAll(sketches);
+		assertEquals(weight, totalWeight(merged), 1e-6 * weight);
+		
+		// pairwise merges keep the weight too, and the result can be fed
+		double pairWeight = totalWeight(sketches.get(10)) 
+				+ totalWeight(sketches.get(49));
+		KMeansSketch pair = sketches.get(10).merge(sketches.get(49));
+		pair.cluster(new Point(new double[D], 2));
+		assertEquals(pairWeight + 2, totalWeight(pair), 1e-6);
+	}
+
+	public void testMergeAllRejectsDifferentParameters() {
+		try {
+			KMeansSketch.mergeAll(Arrays.asList(new KMeansSketch(K, M, R, 3, 2), new KMeansSketch(K, M + 1, R, 3, 2)));
+			fail();
+		}
+		catch (DimensionMismatchException e) {
+			// expected
+		}
+		try {
+			KMeansSketch.mergeAll(new ArrayList<KMeansSketch>());
+			fail();
+		}
+		catch (NoDataException e) {
+			// expected
+		}
+	}
+
+	private static KMeansSketch newSketch(PointBlock data) {
+		KMeansSketch sketch = new KMeansSketch(K, M, R, 3, 2);
+		for (int i=0; i<data.size(); i++) {
+			sketch.cluster(data.getPoint(i));
+		}
+		return sketch;
+	}
+}
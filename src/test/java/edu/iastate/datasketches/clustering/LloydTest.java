@@ -0,0 +1,50 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Hamerly's bounded iterations give the same result as plain Lloyd's iterations
+ */
+public class LloydTest extends TestCase {
+
+	public void testRefineBoundedMatchesRefine() {
+		for (int seed=0; seed<5; seed++) {
+			PointBlock points = SyntheticData.gaussianMixture(3000, 3 + seed, 8, 5, seed);
+			// weights make the means depend on them
+			Random random = new Random(seed);
+			for (int i=0; i<points.size(); i++) {
+				points.setWeight(i, 0.5 + random.nextDouble());
+			}
+			PointBlock initial = new PointBlock(points.dimension(), 8);
+			for (int c=0; c<8; c++) {
+				initial.add(points, random.nextInt(points.size()));
+			}
+			PointBlock plain = new PointBlock(initial);
+			PointBlock bounded = new PointBlock(initial);
+			double plainCost = Lloyd.refine(points, plain, 30);
+			double boundedCost = Lloyd.refineBounded(points, bounded, 30);
+			
+			assertEquals(plainCost, boundedCost, 1e-9 * plainCost);
+			for (int c=0; c<8; c++) {
+				for (int j=0; j<points.dimension(); j++) {
+					assertEquals(plain.coordinate(c, j), bounded.coordinate(c, j), 1e-9);
+				}
+				assertEquals(plain.weight(c), bounded.weight(c), 1e-9);
+			}
+		}
+	}
+
+	public void testCentersGetTheWeightOfTheirPoints() {
+		PointBlock points = SyntheticData.gaussianMixture(2000, 2, 4, 20, 7);
+		PointBlock centers = new PointBlock(2, 4);
+		for (int c=0; c<4; c++) {
+			centers.add(points, c * 500);
+		}
+		double cost = Lloyd.refine(points, centers, 50);
+		assertEquals(points.totalWeight(), centers.totalWeight(), 1e-9);
+		int[] labels = new int[points.size()];
+		assertEquals(cost, Lloyd.assign(points, centers, labels), 1e-9 * cost);
+	}
+}
@@ -0,0 +1,65 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.exception.NumberIsTooSmallException;
+
+/**
+ * every seeding strategy reduces buckets to m weighted centers that keep
+ * the weight of the coresets
+ */
+public class SeedingStrategyTest extends SketchTestCase {
+
+	public void testMergedBucketKeepsWeight() {
+		for (SeedingStrategy seeding : SeedingStrategy.values()) {
+			List<Bucket> others = new ArrayList<>();
+			double weight = 0;
+			Bucket first = null;
+			for (int b=0; b<R; b++) {
+				PointBlock coreset = SyntheticData.gaussianMixture(M, D, K, 10, b);
+				for (int i=0; i<M; i++) {
+					coreset.setWeight(i, 1 + (i + b) % 7);
+				}
+				weight += coreset.totalWeight();
+				if (first == null) {
+					first = new Bucket(M, coreset);
+				}
+				else {
+					others.add(new Bucket(M, coreset));
+				}
+			}
+			Bucket merged = first.mergeBuckets(others, seeding);
+			assertEquals(seeding.name(), M, merged.coresetSize());
+			assertEquals(seeding.name(), weight, merged.coreset.totalWeight(), 1e-9 * weight);
+		}
+	}
+
+	public void testFewerPointsThanCentersIsRejected() {
+		PointBlock points = SyntheticData.gaussianMixture(M - 1, D, K, 10, 6);
+		for (SeedingStrategy seeding : SeedingStrategy.values()) {
+			try {
+				seeding.seed(points, M, new Random(1));
+				fail(seeding.name());
+			}
+			catch (NumberIsTooSmallException e) {
+				// expected
+			}
+		}
+	}
+
+	public void testSketchKeepsWeight() {
+		PointBlock data = SyntheticData.gaussianMixture(3001, D, K, 10, 5);
+		for (SeedingStrategy seeding : SeedingStrategy.values()) {
+			KMeansSketch sketch = new KMeansSketch(K, M, R, 3, 2, seeding);
+			sketch.clusterBatch(data);
+			assertEquals(seeding.name(), 3001, totalWeight(sketch), 1e-6);
+			double centerWeight = 0;
+			for (Point c : sketch.getCenters()) {
+				centerWeight += c.weight;
+			}
+			assertEquals(seeding.name(), 3001, centerWeight, 1e-6);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * sketch parameters and checks shared by the KMeansSketch tests
+ */
+public abstract class SketchTestCase extends TestCase {
+
+	protected static final int K = 5;
+
+	protected static final int M = 40;
+
+	protected static final int R = 3;
+
+	protected static final int D = 4;
+
+	/**
+	 * @param sketch
+	 * @return number of buckets on each level of the coreset tree
+	 */
+	static List<Integer> levelCounts(KMeansSketch sketch) {
+		List<Integer> counts = new ArrayList<>();
+		for (List<Bucket> level : sketch.getCoresetTree()) {
+			counts.add(level.size());
+		}
+		return counts;
+	}
+
+	/**
+	 * @param sketch
+	 * @return total weight held by bucket 0, the coreset tree and the pending buckets
+	 */
+	static double totalWeight(KMeansSketch sketch) {
+		KMeansSketch.State state = sketch.getState();
+		double weight = state.bucket_0.coreset.totalWeight();
+		for (List<Bucket> level : state.coresetTree) {
+			for (Bucket b : level) {
+				weight += b.coreset.totalWeight();
+			}
+		}
+		for (Bucket b : state.pendingBuckets) {
+			weight += b.coreset.totalWeight();
+		}
+		return weight;
+	}
+}
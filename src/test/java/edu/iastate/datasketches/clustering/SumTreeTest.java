@@ -0,0 +1,113 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * SumTree sums and D^2 sampling against the values it holds
+ */
+public class SumTreeTest extends TestCase {
+
+	private static final int SAMPLES = 200000;
+
+	public void testPrefixSumsMatchLoop() {
+		Random random = new Random(1);
+		// not a power of two
+		double[] values = new double[37];
+		for (int i=0; i<values.length; i++) {
+			values[i] = random.nextInt(4) == 0 ? 0 : random.nextDouble();
+		}
+		SumTree tree = new SumTree(values.length);
+		tree.build(values);
+		double sum = 0;
+		for (int i=0; i<values.length; i++) {
+			assertEquals(sum, tree.prefixSum(i), 1e-12);
+			assertEquals(values[i], tree.get(i), 0);
+			sum += values[i];
+		}
+		assertEquals(sum, tree.prefixSum(values.length), 1e-12);
+		assertEquals(sum, tree.total(), 1e-12);
+	}
+
+	public void testSamplingFollowsValues() {
+		double[] values = {1, 0, 3, 6, 0, 10};
+		SumTree tree = new SumTree(values.length);
+		tree.build(values);
+		assertFrequencies(tree, values, 0, values.length);
+		// a range only samples its own indices, in proportion
+		assertFrequencies(tree, values, 2, 5);
+	}
+
+	public void testUpdatesAndZeroingTakeEffect() {
+		double[] values = {1, 2, 3, 4, 5, 6, 7};
+		SumTree tree = new SumTree(values.length);
+		tree.build(values);
+
+		// zeroing a value as when a point becomes a center
+		values[6] = 0;
+		tree.set(6, 0);
+		values[1] = 20;
+		tree.set(1, 20);
+		assertEquals(39, tree.total(), 1e-12);
+		assertFrequencies(tree, values, 0, values.length);
+
+		values[2] = 0;
+		values[3] = 9;
+		tree.setRange(values, 2, 4);
+		assertEquals(41, tree.total(), 1e-12);
+		assertFrequencies(tree, values, 0, values.length);
+
+		// subtrees updated separately, then the nodes above them
+		Arrays.fill(values, 0);
+		values[5] = 2;
+		values[0] = 1;
+		tree.setSubtree(values, 0, 4);
+		tree.setSubtree(values, 4, 4);
+		tree.refreshAbove(4);
+		assertEquals(3, tree.total(), 1e-12);
+		assertFrequencies(tree, values, 0, values.length);
+
+		// build with a short array sets the rest to zero
+		tree.build(new double[] {0, 0, 5});
+		assertEquals(5, tree.total(), 1e-12);
+		assertEquals(2, tree.search(4.9));
+		assertEquals(2, tree.sample(0, 7, 0.99));
+	}
+
+	public void testAllZeros() {
+		SumTree tree = new SumTree(5);
+		assertEquals(-1, tree.search(0));
+		assertEquals(4, tree.sample(0, 5, 0.5));
+		tree.build(new double[] {0, 1, 0, 0, 0});
+		assertEquals(2, tree.sample(2, 3, 0.5));
+		// a target past the total (rounding) gives the last positive index
+		assertEquals(1, tree.search(1));
+	}
+
+	/**
+	 * sample indices of [from, to) and compare their frequencies with the values
+	 */
+	private static void assertFrequencies(SumTree tree, double[] values, int from, int to) {
+		Random random = new Random(7);
+		int[] counts = new int[values.length];
+		for (int s=0; s<SAMPLES; s++) {
+			counts[tree.sample(from, to, random.nextDouble())]++;
+		}
+		double sum = 0;
+		for (int i=from; i<to; i++) {
+			sum += values[i];
+		}
+		for (int i=0; i<values.length; i++) {
+			double expected = i >= from && i < to ? values[i] / sum : 0;
+			if (expected == 0) {
+				assertEquals("index " + i, 0, counts[i]);
+			}
+			else {
+				// about 5 standard deviations
+				assertEquals("index " + i, expected, (double) counts[i] / SAMPLES, 0.005);
+			}
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package edu.iastate.datasketches.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.yahoo.memory.Memory;
+
+/**
+ * a wrapped serialized sketch behaves like the heapified one
+ */
+public class WrappedKMeansSketchTest extends SketchTestCase {
+
+	public void testCentersMatchHeapifiedSketch() {
+		PointBlock data = SyntheticData.gaussianMixture(6011, D, K, 50, 1);
+		KMeansSketch sketch = new KMeansSketch(K, M, R, 5, 3);
+		sketch.clusterBatch(data);
+		Memory mem = Memory.wrap(sketch.toByteArray());
+		WrappedKMeansSketch wrapped = WrappedKMeansSketch.wrap(mem);
+		KMeansSketch heap = KMeansSketch.heapify(mem);
+		
+		assertTrue(Arrays.equals(sketch.toByteArray(), wrapped.toHeap().toByteArray()));
+		List<Point> wrappedCenters = wrapped.getCenters();
+		List<Point> heapCenters = heap.getCenters();
+		assertEquals(K, wrappedCenters.size());
+		assertEquals(K, heapCenters.size());
+		
+		// both find the well separated clusters, their costs are close
+		double wrappedCost = new CostEvaluator(PointBlock.fromPoints(wrappedCenters)).cost(data);
+		double heapCost = new CostEvaluator(PointBlock.fromPoints(heapCenters)).cost(data);
+		assertEquals(1, wrappedCost / heapCost, 0.1);
+		
+		// the centers carry the whole weight of the stream
+		double weight = 0;
+		for (Point c : wrappedCenters) {
+			weight += c.weight;
+		}
+		assertEquals(data.totalWeight(), weight, 1e-6);
+	}
+
+	public void testMergeAllMatchesHeapMerge() {
+		List<KMeansSketch> sketches = new ArrayList<>();
+		List<WrappedKMeansSketch> wrapped = new ArrayList<>();
+		double weight = 0;
+		for (int i=0; i<6; i++) {
+			PointBlock data = SyntheticData.gaussianMixture(1000 + 137 * i, D, K, 50, i);
+			KMeansSketch sketch = new KMeansSketch(K, M, R, 3, 2);
+			sketch.clusterBatch(data);
+			sketches.add(sketch);
+			wrapped.add(WrappedKMeansSketch.wrap(Memory.wrap(sketch.toByteArray())));
+			weight += data.totalWeight();
+		}
+		KMeansSketch fromHeap = KMeansSketch.mergeAll(sketches);
+		KMeansSketch fromWrapped = WrappedKMeansSketch.mergeAll(wrapped);
+		assertEquals(levelCounts(fromHeap), levelCounts(fromWrapped));
+		assertEquals(weight, totalWeight(fromWrapped), 1e-6);
+	}
+}
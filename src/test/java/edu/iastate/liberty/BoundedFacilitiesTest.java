@@ -0,0 +1,146 @@
+package edu.iastate.liberty;
+
+import java.util.List;
+
+import org.apache.commons.math3.exception.NumberIsTooSmallException;
+
+import edu.iastate.datasketches.clustering.Point;
+import edu.iastate.datasketches.clustering.PointBlock;
+import edu.iastate.datasketches.clustering.SyntheticData;
+
+import junit.framework.TestCase;
+
+/**
+ * the online clusterers with a facility budget: compaction keeps them
+ * within the budget and keeps the weight of the stream
+ */
+public class BoundedFacilitiesTest extends TestCase {
+
+	private static final int K = 10;
+
+	private static final int BUDGET = 40;
+
+	/**
+	 * one clusterer under test
+	 */
+	private interface Clusterer {
+		void cluster(Point p);
+
+		List<Point> getCenters();
+	}
+
+	public void testFullyOnlineStaysWithinBudget() {
+		final FullyOnline fo = new FullyOnline(K, new NormPrunedIndex(), BUDGET);
+		checkBudget(mixture(), new Clusterer() {
+			@Override
+			public void cluster(Point p) {
+				fo.cluster(p);
+			}
+
+			@Override
+			public List<Point> getCenters() {
+				return fo.getCenters();
+			}
+		});
+	}
+
+	public void testSemiOnlineStaysWithinBudget() {
+		// a small cost estimate opens many facilities
+		final SemiOnline so = new SemiOnline(20000, 1, K, new LinearScanIndex(), BUDGET);
+		checkBudget(mixture(), new Clusterer() {
+			@Override
+			public void cluster(Point p) {
+				so.cluster(p);
+			}
+
+			@Override
+			public List<Point> getCenters() {
+				return so.getCenters();
+			}
+		});
+	}
+
+	public void testPracticalOnlineStaysWithinBudget() {
+		// PracticalOnline raises its facility cost tenfold after every k
+		// openings, so only a stream that keeps spreading out opens more
+		// than 2*k_target facilities. With k_target=20 it opens every point
+		// that is 4 times farther out than the previous one.
+		PointBlock spreading = new PointBlock(3, 200);
+		for (int i=0; i<200; i++) {
+			spreading.add(new double[] {Math.pow(4, i), i % 2, 0}, 1);
+		}
+		final PracticalOnline po = new PracticalOnline(20, new NormPrunedIndex(), BUDGET);
+		checkBudget(spreading, new Clusterer() {
+			@Override
+			public void cluster(Point p) {
+				po.cluster(p);
+			}
+
+			@Override
+			public List<Point> getCenters() {
+				return po.getCenters();
+			}
+		});
+	}
+
+	public void testBudgetBelowMinimumIsRejected() {
+		try {
+			new FullyOnline(K, new NormPrunedIndex(), 2 * K - 1);
+			fail();
+		}
+		catch (NumberIsTooSmallException e) {
+			// expected
+		}
+		try {
+			new SemiOnline(1000, 1, K, new NormPrunedIndex(), 2 * K - 1);
+			fail();
+		}
+		catch (NumberIsTooSmallException e) {
+			// expected
+		}
+		try {
+			new PracticalOnline(K, new NormPrunedIndex(), 2 * K - 1);
+			fail();
+		}
+		catch (NumberIsTooSmallException e) {
+			// expected
+		}
+		// the smallest budget is accepted
+		new FullyOnline(K, new NormPrunedIndex(), 2 * K);
+		new SemiOnline(1000, 1, K, new NormPrunedIndex(), 2 * K);
+		new PracticalOnline(K, new NormPrunedIndex(), 2 * K);
+	}
+
+	private static PointBlock mixture() {
+		return SyntheticData.gaussianMixture(20000, 3, K, 50, 1);
+	}
+
+	/**
+	 * stream the points with varying weights through the clusterer,
+	 * checking the budget after every point and the total weight at the end
+	 */
+	private static void checkBudget(PointBlock data, Clusterer clusterer) {
+		double weight = 0;
+		int compactions = 0;
+		int before = 0;
+		for (int i=0; i<data.size(); i++) {
+			Point p = data.getPoint(i);
+			p.weight = 1 + i % 3;
+			weight += p.weight;
+			clusterer.cluster(p);
+			int size = clusterer.getCenters().size();
+			assertTrue(size <= BUDGET);
+			if (size < before) {
+				compactions++;
+			}
+			before = size;
+		}
+		assertTrue("expected the stream to go past the budget", compactions > 0);
+
+		double centerWeight = 0;
+		for (Point c : clusterer.getCenters()) {
+			centerWeight += c.weight;
+		}
+		assertEquals(weight, centerWeight, 1e-9 * weight);
+	}
+}
@@ -0,0 +1,66 @@
+package edu.iastate.liberty;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * the pruned search must find what the linear scan finds
+ */
+public class NormPrunedIndexTest extends TestCase {
+
+	private static double[] clustered(Random random, double[][] means) {
+		double[] mean = means[random.nextInt(means.length)];
+		double[] p = new double[mean.length];
+		for (int j=0; j<p.length; j++) {
+			p[j] = mean[j] + random.nextGaussian();
+		}
+		return p;
+	}
+
+	public void testMatchesLinearScan() {
+		Random random = new Random(7);
+		int d = 5;
+		double[][] means = new double[8][d];
+		for (double[] mean : means) {
+			for (int j=0; j<d; j++) {
+				mean[j] = 50 * random.nextDouble();
+			}
+		}
+		NearestCenterIndex pruned = new NormPrunedIndex();
+		NearestCenterIndex linear = new LinearScanIndex();
+		for (int c=0; c<300; c++) {
+			double[] center = clustered(random, means);
+			pruned.add(center);
+			linear.add(center);
+			if (c % 10 != 0) {
+				continue;
+			}
+			for (int q=0; q<50; q++) {
+				double[] query = clustered(random, means);
+				assertEquals(linear.nearest(query), pruned.nearest(query));
+				assertEquals(linear.nearestSquaredDistance(query),
+						pruned.nearestSquaredDistance(query), 1e-9);
+			}
+		}
+		assertEquals(300, pruned.size());
+	}
+
+	public void testEmptyAndClear() {
+		NearestCenterIndex index = new NormPrunedIndex();
+		double[] q = {1, 2};
+		assertEquals(-1, index.nearest(q));
+		assertEquals(Double.MAX_VALUE, index.nearestSquaredDistance(q), 0);
+		index.add(new double[] {0, 0});
+		index.add(new double[] {3, 4});
+		assertEquals(0, index.nearest(q));
+		assertEquals(5, index.nearestSquaredDistance(q), 1e-12);
+		index.clear();
+		assertEquals(0, index.size());
+		assertEquals(-1, index.nearest(q));
+		// the reference point is picked again after clear
+		index.add(new double[] {3, 4});
+		assertEquals(0, index.nearest(q));
+		assertEquals(8, index.nearestSquaredDistance(q), 1e-12);
+	}
+}